@@ -48,4 +48,10 @@ public class ContractMapsInfo {
     /** @Fields contractBinaryMap : use to storage contract binary map, key:contract binary, value:contract name */
     private Map<String, String> contractBinaryMap;
 
+    /** @Fields eventTopicMap : key:contract name, value:(key:event topic0 signature hash, value:event name) */
+    private Map<String, Map<String, String>> eventTopicMap;
+
+    /** @Fields contractMethodMap : key:contract name, value:method meta infos of the contract */
+    private Map<String, List<MethodMetaInfo>> contractMethodMap;
+
 }
@@ -16,6 +16,7 @@
 package com.webank.webasebee.common.bo.contract;
 
 import java.util.List;
+import java.util.Map;
 
 import lombok.Data;
 import lombok.experimental.Accessors;
@@ -40,4 +41,7 @@ public class ContractMethodInfo {
 	
 	/** @Fields methodMetaInfos : methodMetaInfos */
 	private List<MethodMetaInfo> methodMetaInfos;
+	
+	/** @Fields eventTopicMap : key:event topic0 signature hash, value:event name */
+	private Map<String, String> eventTopicMap;
 }
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.common.bo.data;
+
+import java.util.List;
+
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
+
+import lombok.Value;
+
+/**
+ * BlockBundleBO is the immutable per-block input of all the parser handlers: the block itself and the bundles of its
+ * transactions, in block order.
+ *
+ * @Description: BlockBundleBO
+ *
+ */
+@Value
+public class BlockBundleBO {
+    private Block block;
+
+    private List<TransactionBundleBO> transactionBundles;
+
+}
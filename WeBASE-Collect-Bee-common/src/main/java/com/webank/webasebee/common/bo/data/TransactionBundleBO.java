@@ -0,0 +1,52 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.common.bo.data;
+
+import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
+import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import com.webank.webasebee.common.constants.ContractConstants;
+
+import lombok.Value;
+
+/**
+ * TransactionBundleBO holds everything fetched from the node for a single transaction, so that the account, method
+ * and event handlers share one copy instead of querying the node again.
+ *
+ * @Description: TransactionBundleBO
+ *
+ */
+@Value
+public class TransactionBundleBO {
+
+    /** @Fields transaction : transaction, may be null if the node returns nothing for the hash */
+    private Transaction transaction;
+
+    /** @Fields receipt : transaction receipt */
+    private TransactionReceipt receipt;
+
+    /** @Fields contractAddress : deployed address for a constructor tx, or the called address */
+    private String contractAddress;
+
+    /** @Fields code : runtime code of contractAddress, null if not resolved */
+    private String code;
+
+    public boolean isDeployment() {
+        return transaction != null
+                && (transaction.getTo() == null || transaction.getTo().equals(ContractConstants.EMPTY_ADDRESS));
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.common.tools;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BlockHeightBitmap is a set of block heights split into chunks of 65536 heights, the same way as a roaring bitmap
+ * splits its keys. A chunk is kept as a BitSet of 8 KB until all of its heights are added, and then collapses to a
+ * shared marker, so the bitmap of a chain which is mostly complete takes a few bytes per chunk, and checking a range
+ * of millions of heights takes one lookup per chunk.
+ *
+ * @Description: BlockHeightBitmap
+ *
+ */
+public class BlockHeightBitmap {
+    public static final int CHUNK_SIZE = 1 << 16;
+    private static final BitSet FULL = new BitSet(0);
+
+    private final Map<Long, BitSet> chunks = new HashMap<>();
+
+    public static long chunkStart(long height) {
+        return height & ~(long) (CHUNK_SIZE - 1);
+    }
+
+    public synchronized void add(long height) {
+        add(height, height);
+    }
+
+    /**
+     * Add the heights from start to end(inclusive).
+     */
+    public synchronized void add(long start, long end) {
+        for (long base = chunkStart(start); base <= end; base += CHUNK_SIZE) {
+            BitSet bits = chunks.get(base);
+            if (bits == FULL) {
+                continue;
+            }
+            if (bits == null) {
+                bits = new BitSet(CHUNK_SIZE);
+                chunks.put(base, bits);
+            }
+            bits.set(offset(Math.max(start, base), base), offset(Math.min(end, base + CHUNK_SIZE - 1), base) + 1);
+            if (bits.cardinality() == CHUNK_SIZE) {
+                chunks.put(base, FULL);
+            }
+        }
+    }
+
+    public synchronized boolean contains(long height) {
+        BitSet bits = chunks.get(chunkStart(height));
+        return bits == FULL || bits != null && bits.get(offset(height, chunkStart(height)));
+    }
+
+    /**
+     * Whether all the heights from start to end(inclusive) are added.
+     */
+    public synchronized boolean containsAll(long start, long end) {
+        for (long base = chunkStart(start); base <= end; base += CHUNK_SIZE) {
+            BitSet bits = chunks.get(base);
+            if (bits == FULL) {
+                continue;
+            }
+            if (bits == null) {
+                return false;
+            }
+            int to = offset(Math.min(end, base + CHUNK_SIZE - 1), base);
+            if (bits.nextClearBit(offset(Math.max(start, base), base)) <= to) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the heights from start to end(inclusive) which are not added, in ascending order.
+     */
+    public synchronized List<Long> missing(long start, long end) {
+        List<Long> result = new ArrayList<>();
+        for (long base = chunkStart(start); base <= end; base += CHUNK_SIZE) {
+            BitSet bits = chunks.get(base);
+            if (bits == FULL) {
+                continue;
+            }
+            int to = offset(Math.min(end, base + CHUNK_SIZE - 1), base);
+            for (int i = offset(Math.max(start, base), base); i <= to; i++) {
+                if (bits != null) {
+                    i = bits.nextClearBit(i);
+                    if (i > to) {
+                        break;
+                    }
+                }
+                result.add(base + i);
+            }
+        }
+        return result;
+    }
+
+    private static int offset(long height, long base) {
+        return (int) (height - base);
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.common.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.Hashing;
+import com.webank.webasebee.common.constants.BinConstant;
+
+/**
+ * BytecodeIndex indexes the contract binaries once, and answers the two questions of ContractConstructorService
+ * without scanning every binary:
+ * 
+ * 1. which binary is a prefix of a deploy transaction input, answered by floor lookups in a sorted map;
+ * 
+ * 2. which binary contains a deployed runtime code, answered by a memo keyed by the SHA-256 digest of the normalized
+ * code, and by a suffix array over all binaries for codes seen for the first time. A suffix array is used instead of a
+ * suffix automaton since it takes one int per hex char. The memo is a size bounded cache which keeps only digests, so
+ * the codes themselves are never kept on the heap.
+ * 
+ * All binaries and inputs are lower cased and stripped of the metadata hash appended by solc.
+ *
+ * @Description: BytecodeIndex
+ *
+ */
+public class BytecodeIndex {
+    private static final char SEPARATOR = '#';
+    private static final int MAX_MEMO_SIZE = 10000;
+
+    /** key: stripped binary, value: key:contract binary, value:contract name */
+    private final TreeMap<String, Map.Entry<String, String>> prefixIndex = new TreeMap<>();
+    private final List<Map.Entry<String, String>> entries = new ArrayList<>();
+    /** start offset of each binary in the text */
+    private final int[] offsets;
+    private final String text;
+    private final int[] suffixArray;
+    /** key: SHA-256 digest of the normalized code */
+    private final Cache<String, Optional<Map.Entry<String, String>>> codeMemo =
+            Caffeine.newBuilder().maximumSize(MAX_MEMO_SIZE).build();
+
+    /**
+     * @param binaryMap key:contract binary, value:contract name
+     */
+    public BytecodeIndex(Map<String, String> binaryMap) {
+        StringBuilder sb = new StringBuilder();
+        List<Integer> starts = new ArrayList<>();
+        for (Map.Entry<String, String> e : binaryMap.entrySet()) {
+            String key = e.getKey();
+            if (key == null || key.length() <= BinConstant.META_DATA_HASH_LENGTH) {
+                continue;
+            }
+            Map.Entry<String, String> entry = new SimpleImmutableEntry<>(e.getKey(), e.getValue());
+            String stripped = key.substring(0, key.length() - 1 - BinConstant.META_DATA_HASH_LENGTH).toLowerCase();
+            prefixIndex.putIfAbsent(stripped, entry);
+            entries.add(entry);
+            starts.add(sb.length());
+            sb.append(key.toLowerCase()).append(SEPARATOR);
+        }
+        this.text = sb.toString();
+        this.offsets = starts.stream().mapToInt(Integer::intValue).toArray();
+        this.suffixArray = buildSuffixArray(text);
+    }
+
+    /**
+     * Find the binary whose stripped form is a prefix of the deploy transaction input.
+     * 
+     * @param input deploy transaction input, start with 0x
+     * @return key:contract binary, value:contract name, or null
+     */
+    public Map.Entry<String, String> getByBinary(String input) {
+        if (input == null || input.length() <= BinConstant.META_DATA_HASH_LENGTH) {
+            return null;
+        }
+        String probe = input.substring(2).toLowerCase();
+        while (!probe.isEmpty()) {
+            Map.Entry<String, Map.Entry<String, String>> floor = prefixIndex.floorEntry(probe);
+            if (floor == null) {
+                return null;
+            }
+            String key = floor.getKey();
+            if (probe.startsWith(key)) {
+                return floor.getValue();
+            }
+            // every binary which is a prefix of the probe is also a prefix of the floor key.
+            probe = probe.substring(0, StringUtils.indexOfDifference(probe, key));
+        }
+        return null;
+    }
+
+    /**
+     * Find the binary which contains the deployed runtime code.
+     * 
+     * @param code runtime code, start with 0x
+     * @return key:contract binary, value:contract name, or null
+     */
+    public Map.Entry<String, String> getByCode(String code) {
+        if (code == null || code.length() <= BinConstant.META_DATA_HASH_LENGTH + 3) {
+            return null;
+        }
+        String pattern = code.substring(2, code.length() - 1 - BinConstant.META_DATA_HASH_LENGTH).toLowerCase();
+        String digest = Hashing.sha256().hashString(pattern, StandardCharsets.US_ASCII).toString();
+        return codeMemo.get(digest, k -> Optional.ofNullable(search(pattern))).orElse(null);
+    }
+
+    private Map.Entry<String, String> search(String pattern) {
+        int lo = 0;
+        int hi = suffixArray.length;
+        // lower bound of the suffixes not less than the pattern
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(suffixArray[mid], pattern) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == suffixArray.length || !text.startsWith(pattern, suffixArray[lo])) {
+            return null;
+        }
+        int index = Arrays.binarySearch(offsets, suffixArray[lo]);
+        return entries.get(index >= 0 ? index : -index - 2);
+    }
+
+    private int compare(int suffix, String pattern) {
+        int n = Math.min(text.length() - suffix, pattern.length());
+        for (int i = 0; i < n; i++) {
+            char a = text.charAt(suffix + i);
+            char b = pattern.charAt(i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return n == pattern.length() ? 0 : -1;
+    }
+
+    /**
+     * Build the suffix array by prefix doubling with radix sort, O(n log n).
+     */
+    static int[] buildSuffixArray(String s) {
+        int n = s.length();
+        int[] sa = new int[n];
+        int[] rank = new int[n];
+        int[] tmp = new int[n];
+        if (n == 0) {
+            return sa;
+        }
+        int maxChar = 0;
+        for (int i = 0; i < n; i++) {
+            rank[i] = s.charAt(i);
+            maxChar = Math.max(maxChar, rank[i]);
+        }
+        int classes = Math.max(maxChar, n) + 1;
+        // initial counting sort by the first char
+        int[] initCount = new int[classes];
+        for (int i = 0; i < n; i++) {
+            initCount[rank[i]]++;
+        }
+        for (int i = 1; i < classes; i++) {
+            initCount[i] += initCount[i - 1];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            sa[--initCount[rank[i]]] = i;
+        }
+        for (int k = 1;; k <<= 1) {
+            // sort by the second key, then stable counting sort by the first key
+            int p = 0;
+            for (int i = n - k; i < n; i++) {
+                tmp[p++] = i;
+            }
+            for (int i = 0; i < n; i++) {
+                if (sa[i] >= k) {
+                    tmp[p++] = sa[i] - k;
+                }
+            }
+            int[] count = new int[classes];
+            for (int i = 0; i < n; i++) {
+                count[rank[i]]++;
+            }
+            for (int i = 1; i < classes; i++) {
+                count[i] += count[i - 1];
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                sa[--count[rank[tmp[i]]]] = tmp[i];
+            }
+            tmp[sa[0]] = 1;
+            for (int i = 1; i < n; i++) {
+                int a = sa[i - 1];
+                int b = sa[i];
+                boolean same = rank[a] == rank[b] && (a + k < n ? rank[a + k] : 0) == (b + k < n ? rank[b + k] : 0);
+                tmp[b] = tmp[a] + (same ? 0 : 1);
+            }
+            int[] swap = rank;
+            rank = tmp;
+            tmp = swap;
+            if (rank[sa[n - 1]] == n) {
+                return sa;
+            }
+        }
+    }
+}
@@ -24,7 +24,7 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.webank.webasebee.common.enums.TxInfoStatusEnum;
-import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -46,13 +46,13 @@ public class BlockTaskPoolController {
     @Autowired
     private Web3j web3j;
     @Autowired
-    private BlockTaskPoolRepository blockTaskPoolRepository;
+    private BlockTaskTracker blockTaskTracker;
 
     @ResponseBody
     @RequestMapping("/blocks/get")
     @ApiOperation(value = "Get finished block count", httpMethod = "GET")
     public long getFinishedBlockCount() {
-        return blockTaskPoolRepository.countBySyncStatus((short) TxInfoStatusEnum.DONE.getStatus());
+        return blockTaskTracker.countBySyncStatus((short) TxInfoStatusEnum.DONE.getStatus());
     }
 
     @ResponseBody
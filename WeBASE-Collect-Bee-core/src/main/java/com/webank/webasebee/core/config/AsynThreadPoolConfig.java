@@ -16,14 +16,17 @@
 package com.webank.webasebee.core.config;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import com.webank.webasebee.core.service.DepotMetricsService;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -40,19 +43,50 @@ import lombok.extern.slf4j.Slf4j;
 @ConditionalOnProperty(name = "system.multiLiving", havingValue = "false")
 public class AsynThreadPoolConfig {
 
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private DepotMetricsService depotMetricsService;
+
+    /**
+     * The depot executor, the crawl loop thread is blocked instead of running the block itself when all the threads
+     * are busy and the queue is full.
+     * 
+     * @return Executor
+     */
     @Bean("taskExecutor")
     public Executor taskExecutor() {
         log.info("Begin to init taskExecutor");
+        int threads = systemEnvironmentConfig.getDepotThreads();
+        if (systemEnvironmentConfig.isDepotAdaptive()) {
+            threads = Math.max(systemEnvironmentConfig.getDepotMinThreads(),
+                    Math.min(threads, systemEnvironmentConfig.getDepotMaxThreads()));
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(8);
-        executor.setMaxPoolSize(8);
-        executor.setQueueCapacity(0);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(systemEnvironmentConfig.getDepotQueueSize());
         executor.setKeepAliveSeconds(60);
         executor.setThreadNamePrefix("taskExecutor-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(depotMetricsService::decorate);
+        executor.setRejectedExecutionHandler((r, e) -> {
+            if (e.isShutdown()) {
+                throw new RejectedExecutionException("taskExecutor is shut down");
+            }
+            depotMetricsService.recordBlockedSubmit();
+            try {
+                e.getQueue().put(r);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(ex);
+            }
+        });
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         executor.initialize();
+        depotMetricsService.register(executor);
+        log.info("taskExecutor threads {}, queue size {}, adaptive {}", threads,
+                systemEnvironmentConfig.getDepotQueueSize(), systemEnvironmentConfig.isDepotAdaptive());
         return executor;
     }
 
@@ -39,6 +39,14 @@ public class SystemEnvironmentConfig {
 
     private String privateKey;
     private int crawlBatchUnit = 1000;
+    /** adjust the number of blocks prepared and fetched per round between min and max, see CrawlBatchUnitService. */
+    private boolean crawlBatchUnitAdaptive;
+    private int crawlBatchUnitMin = 10;
+    private int crawlBatchUnitMax = 10000;
+    /** expected time in ms of a round during catch-up. */
+    private long crawlBatchTargetTime = 30000;
+    /** halve the batch unit when the ratio of error blocks of a round exceeds it. */
+    private double crawlBatchMaxErrorRate = 0.05;
 
     private boolean multiLiving;
     private String zookeeperServiceLists;
@@ -46,8 +54,21 @@ public class SystemEnvironmentConfig {
     private String elasticJobName;
     private String elasticJobcron;
     private int elasticJobshardingTotalCount;
+    /** number of init tasks each fetch of the multi-living depot job claims. */
+    private int depotClaimSize = 10;
+    /** hand out the prepared blocks to the depot jobs as leases of contiguous heights. */
+    private boolean rangeLease;
+    private int rangeLeaseSize = 500;
+    /** time in ms after which a lease not renewed by its owner can be taken by other instances. */
+    private long rangeLeaseTimeout = 60000;
+    /** let an idle instance take over the second half of a lease from the instance with the most remaining time. */
+    private boolean rangeLeaseSteal;
+    /** a lease is split only when its blocks from the lowest init one to the end are not less than it. */
+    private int rangeLeaseMinSteal = 100;
 
     private long frequency;
+    /** wake up the crawl loop by the block notifications of the node, system.frequency becomes the polling fallback. */
+    private boolean tailFollow;
     private String contractPackName;
     private String group;
     private String baseProjectPath;
@@ -58,4 +79,29 @@ public class SystemEnvironmentConfig {
     private String startDate;
     
     private int encryptType = 0;
+
+    /** run the single instance depot as a fetch -> parse -> store pipeline joined by bounded queues. */
+    private boolean pipeline;
+    private int pipelineFetchThreads = 4;
+    private int pipelineParseThreads = 4;
+    private int pipelineStoreThreads = 4;
+    private int pipelineQueueSize = 64;
+    /** number of blocks the pipeline store stage commits in one transaction. */
+    private int blocksPerCommit = 1;
+
+    /** buffer parsed blocks and store them in one transaction when the rows or the delay reach the thresholds. */
+    private boolean writeBehind;
+    private int writeBehindMaxRows = 5000;
+    private long writeBehindMaxDelay = 1000;
+
+    /** threads and queue of the single instance depot executor, the crawl loop waits when the executor is full. */
+    private int depotThreads = 8;
+    private int depotQueueSize = 0;
+    /** resize the depot executor between min and max threads by the node and DB latency of the blocks. */
+    private boolean depotAdaptive;
+    private int depotMinThreads = 2;
+    private int depotMaxThreads = 32;
+    /** average parse and store time of a block in ms, above which the depot executor shrinks. */
+    private long depotMaxNodeLatency = 2000;
+    private long depotMaxDbLatency = 1000;
 }
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.fisco.bcos.web3j.abi.EventEncoder;
 import org.fisco.bcos.web3j.abi.FunctionEncoder;
 import org.fisco.bcos.web3j.protocol.core.methods.response.AbiDefinition;
 import org.fisco.bcos.web3j.protocol.core.methods.response.AbiDefinition.NamedType;
@@ -111,11 +112,21 @@ public class ContractParser {
 
         List<MethodMetaInfo> methodIdList = Lists.newArrayList();
         contractMethodInfo.setMethodMetaInfos(methodIdList);
+        Map<String, String> eventTopicMap = new HashMap<>();
+        contractMethodInfo.setEventTopicMap(eventTopicMap);
 
         for (AbiDefinition abiDefinition : abiDefinitions) {
             String abiType = abiDefinition.getType();
-            // remove event function and query function
-            if (abiType.equals(AbiTypeConstants.ABI_EVENT_TYPE) || abiDefinition.isConstant()) {
+            // compute topic0 of event by event name and event input's params.
+            if (abiType.equals(AbiTypeConstants.ABI_EVENT_TYPE)) {
+                String topic = EventEncoder.buildEventSignature(MethodUtils.buildMethodSignature(
+                        abiDefinition.getName(), abiDefinition.getInputs() == null ? Lists.newArrayList()
+                                : abiDefinition.getInputs()));
+                eventTopicMap.put(topic.toLowerCase(), abiDefinition.getName());
+                continue;
+            }
+            // remove query function
+            if (abiDefinition.isConstant()) {
                 continue;
             }
             // remove functions that input'params is null
@@ -161,8 +172,12 @@ public class ContractParser {
         Map<String, List<NamedType>> methodFiledsMap = new HashMap<>();
         Map<String, List<NamedType>> outputMethodFiledsMap = new HashMap<>();
         Map<String, String> contractBinaryMap = new HashMap<>();
+        Map<String, Map<String, String>> eventTopicMap = new HashMap<>();
+        Map<String, List<MethodMetaInfo>> contractMethodMap = new HashMap<>();
         for (ContractMethodInfo contractMethodInfo : contractMethodInfos) {
             contractBinaryMap.put(contractMethodInfo.getContractBinary(), contractMethodInfo.getContractName());
+            eventTopicMap.put(contractMethodInfo.getContractName(), contractMethodInfo.getEventTopicMap());
+            contractMethodMap.put(contractMethodInfo.getContractName(), contractMethodInfo.getMethodMetaInfos());
             for (MethodMetaInfo methodMetaInfo : contractMethodInfo.getMethodMetaInfos()) {
                 NameValueVO<String> nameValue = new NameValueVO<>();
                 nameValue.setName(contractMethodInfo.getContractName());
@@ -179,6 +194,8 @@ public class ContractParser {
         contractMapsInfo.setOutputMethodFiledsMap(outputMethodFiledsMap);
         log.info("Init sync block: find {} contract methods.", methodIdMap.size());
         contractMapsInfo.setMethodIdMap(methodIdMap);
+        contractMapsInfo.setEventTopicMap(eventTopicMap);
+        contractMapsInfo.setContractMethodMap(contractMethodMap);
         return contractMapsInfo;
     }
 }
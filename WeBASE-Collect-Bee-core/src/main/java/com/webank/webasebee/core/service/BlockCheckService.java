@@ -18,24 +18,27 @@ package com.webank.webasebee.core.service;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.codec.binary.StringUtils;
-import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import com.google.common.collect.Lists;
 import com.webank.webasebee.common.constants.BlockConstants;
 import com.webank.webasebee.common.enums.BlockCertaintyEnum;
 import com.webank.webasebee.common.enums.TxInfoStatusEnum;
-import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+import com.webank.webasebee.common.tools.BlockHeightBitmap;
 import com.webank.webasebee.db.dao.BlockDetailInfoDAO;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
 import com.webank.webasebee.db.entity.BlockTaskPool;
-import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
 import com.webank.webasebee.extractor.ods.EthClient;
 
 import cn.hutool.core.date.DateUtil;
@@ -52,38 +55,54 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 @Slf4j
 public class BlockCheckService {
+    /** max number of blocks whose hashes are compared in one batch of the fork check. */
+    private static final int FORK_CHECK_BATCH_SIZE = 1000;
 
     @Autowired
-    private BlockTaskPoolRepository blockTaskPoolRepository;
+    private BlockTaskTracker blockTaskTracker;
     @Autowired
     private BlockDetailInfoDAO blockDetailInfoDAO;
     @Autowired
     private RollBackService rollBackService;
     @Autowired
     private EthClient ethClient;
-    @Autowired
-    private SystemEnvironmentConfig systemEnvironmentConfig;
+    /** only exists in the multi-living mode. */
+    @Autowired(required = false)
+    private BlockTaskLeaseService blockTaskLeaseService;
+
+    private final BlockHeightBitmap taskBitmap = new BlockHeightBitmap();
 
+    /**
+     * Rollback the error and timeout blocks and reset them to init, each contiguous span of them is rolled back and
+     * reset at once.
+     */
     public void processErrors() {
         log.info("Begin to check error records");
-        List<BlockTaskPool> unnormalRecords = blockTaskPoolRepository.findUnNormalRecords();
+        List<BlockTaskPool> unnormalRecords = blockTaskTracker.findUnNormalRecords();
         if (CollectionUtils.isEmpty(unnormalRecords)) {
             return;
-        } else {
-            log.info("sync block detect {} error transactions.", unnormalRecords.size());
-            unnormalRecords.parallelStream().map(b -> b.getBlockHeight()).forEach(e -> {
-                log.error("Block {} sync error, and begin to rollback.", e);
-                rollBackService.rollback(e, e + 1);
-                blockTaskPoolRepository.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.INIT.getStatus(),
-                        new Date(), e);
-            });
         }
+        log.info("sync block detect {} error transactions.", unnormalRecords.size());
+        List<Long> heights = unnormalRecords.stream().map(BlockTaskPool::getBlockHeight).sorted()
+                .collect(Collectors.toList());
+        forEachSpan(heights, (start, end) -> {
+            log.error("Block {} to {} sync error, and begin to rollback.", start, end);
+            rollBackService.rollback(start, end + 1);
+            resetToInit(start, end);
+        });
     }
 
+    /**
+     * Check the uncertain blocks which are deep enough. The stored hashes of a batch are read in one query and the
+     * chain hashes are fetched in one pipelined batch, then each contiguous span of forked blocks is rolled back and
+     * reset at once.
+     */
     public void checkForks(long currentBlockHeight) throws IOException {
         log.info("current block height is {}, and begin to check forks", currentBlockHeight);
         List<BlockTaskPool> uncertainBlocks =
-                blockTaskPoolRepository.findByCertainty((short) BlockCertaintyEnum.UNCERTAIN.getCertainty());
+                blockTaskTracker.findByCertainty((short) BlockCertaintyEnum.UNCERTAIN.getCertainty());
+        List<Long> fixed = new ArrayList<>();
+        List<Long> synced = new ArrayList<>();
         for (BlockTaskPool pool : uncertainBlocks) {
             if (pool.getBlockHeight() <= currentBlockHeight - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER) {
                 if (pool.getSyncStatus() == TxInfoStatusEnum.DOING.getStatus()) {
@@ -92,82 +111,99 @@ public class BlockCheckService {
                 }
                 if (pool.getSyncStatus() == TxInfoStatusEnum.INIT.getStatus()) {
                     log.error("block {} is not sync!", pool.getBlockHeight());
-                    blockTaskPoolRepository.setCertaintyByBlockHeight((short) BlockCertaintyEnum.FIXED.getCertainty(),
-                            pool.getBlockHeight());
+                    fixed.add(pool.getBlockHeight());
                     continue;
                 }
-                Block block = ethClient.getBlock(BigInteger.valueOf(pool.getBlockHeight()));
-                String newHash = block.getHash();
-                if (!StringUtils.equals(newHash,
-                        blockDetailInfoDAO.getBlockDetailInfoByBlockHeight(pool.getBlockHeight()).getBlockHash())) {
-                    log.info("Block {} is forked!!! ready to resync", pool.getBlockHeight());
-                    rollBackService.rollback(pool.getBlockHeight(), pool.getBlockHeight() + 1);
-                    blockTaskPoolRepository.setSyncStatusAndCertaintyByBlockHeight(
-                            (short) TxInfoStatusEnum.INIT.getStatus(), (short) BlockCertaintyEnum.FIXED.getCertainty(),
-                            pool.getBlockHeight());
+                synced.add(pool.getBlockHeight());
+            }
+        }
+        Collections.sort(synced);
+        List<Long> forked = new ArrayList<>();
+        for (List<Long> part : Lists.partition(synced, FORK_CHECK_BATCH_SIZE)) {
+            Map<Long, String> storedHashes =
+                    blockDetailInfoDAO.getBlockHashes(part.get(0), part.get(part.size() - 1));
+            List<String> chainHashes = ethClient.getBlockHashes(
+                    part.stream().map(BigInteger::valueOf).collect(Collectors.toList()));
+            for (int i = 0; i < part.size(); i++) {
+                // a synced block without a stored hash is lost, and must be synced again
+                String storedHash = storedHashes.get(part.get(i));
+                if (storedHash != null && StringUtils.equals(chainHashes.get(i), storedHash)) {
+                    log.info("Block {} is not forked!", part.get(i));
+                    fixed.add(part.get(i));
                 } else {
-                    log.info("Block {} is not forked!", pool.getBlockHeight());
-                    blockTaskPoolRepository.setCertaintyByBlockHeight((short) BlockCertaintyEnum.FIXED.getCertainty(),
-                            pool.getBlockHeight());
+                    log.info("Block {} is forked!!! ready to resync", part.get(i));
+                    forked.add(part.get(i));
                 }
-
             }
         }
+        forEachSpan(forked, (start, end) -> {
+            rollBackService.rollback(start, end + 1);
+            resetToInit(start, end);
+        });
+        fixed.addAll(forked);
+        if (!fixed.isEmpty()) {
+            blockTaskTracker.setCertaintyByBlockHeights((short) BlockCertaintyEnum.FIXED.getCertainty(), fixed);
+        }
 
     }
 
     public void checkTimeOut() {
         Date offsetDate = DateUtil.offsetSecond(DateUtil.date(), 0 - BlockConstants.DEPOT_TIME_OUT);
         log.info("Begin to check timeout transactions which is ealier than {}", offsetDate);
-        List<BlockTaskPool> list = blockTaskPoolRepository
+        List<BlockTaskPool> list = blockTaskTracker
                 .findBySyncStatusAndDepotUpdatetimeLessThan((short) TxInfoStatusEnum.DOING.getStatus(), offsetDate);
-        if (!CollectionUtils.isEmpty(list)) {
-            log.info("Detect {} timeout transactions.", list.size());
+        if (CollectionUtils.isEmpty(list)) {
+            return;
         }
+        log.info("Detect {} timeout transactions.", list.size());
         list.forEach(p -> {
             log.error("Block {} sync block timeout!!, the depot_time is {}, and the threshold time is {}",
                     p.getBlockHeight(), p.getDepotUpdatetime(), offsetDate);
-            blockTaskPoolRepository.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.TIMEOUT.getStatus(), new Date(),
-                    p.getBlockHeight());
         });
+        blockTaskTracker.setSyncStatusByBlockHeights((short) TxInfoStatusEnum.TIMEOUT.getStatus(), new Date(),
+                list.stream().map(BlockTaskPool::getBlockHeight).collect(Collectors.toList()));
 
     }
 
+    /**
+     * Supplement the missing tasks from start to current max. The heights of the tasks are kept in a bitmap, since the
+     * tasks are never deleted, a chunk of the bitmap which is complete is never checked again.
+     */
     public void checkTaskCount(long startBlockNumber, long currentMaxTaskPoolNumber) {
         log.info("Check task count from {} to {}", startBlockNumber, currentMaxTaskPoolNumber);
+        if (taskBitmap.containsAll(startBlockNumber, currentMaxTaskPoolNumber)) {
+            return;
+        }
         if (isComplete(startBlockNumber, currentMaxTaskPoolNumber)) {
+            taskBitmap.add(startBlockNumber, currentMaxTaskPoolNumber);
             return;
         }
         List<BlockTaskPool> supplements = new ArrayList<>();
-        long t = startBlockNumber;
-        for (long i = startBlockNumber; i <= currentMaxTaskPoolNumber
-                - systemEnvironmentConfig.getCrawlBatchUnit(); i += systemEnvironmentConfig.getCrawlBatchUnit()) {
-            long j = i + systemEnvironmentConfig.getCrawlBatchUnit() - 1;
+        for (long i = startBlockNumber; i <= currentMaxTaskPoolNumber; i =
+                BlockHeightBitmap.chunkStart(i) + BlockHeightBitmap.CHUNK_SIZE) {
+            long j = Math.min(currentMaxTaskPoolNumber,
+                    BlockHeightBitmap.chunkStart(i) + BlockHeightBitmap.CHUNK_SIZE - 1);
             Optional<List<BlockTaskPool>> optional = findMissingPoolRecords(i, j);
             if (optional.isPresent()) {
                 supplements.addAll(optional.get());
             }
-            t = j + 1;
-        }
-        Optional<List<BlockTaskPool>> optional = findMissingPoolRecords(t, currentMaxTaskPoolNumber);
-        if (optional.isPresent()) {
-            supplements.addAll(optional.get());
         }
         log.info("Find {} missing pool numbers", supplements.size());
-        blockTaskPoolRepository.saveAll(supplements);
+        blockTaskTracker.saveAll(supplements);
+        supplements.forEach(p -> taskBitmap.add(p.getBlockHeight()));
     }
 
     public Optional<List<BlockTaskPool>> findMissingPoolRecords(long startIndex, long endIndex) {
+        if (taskBitmap.containsAll(startIndex, endIndex)) {
+            return Optional.empty();
+        }
         if (isComplete(startIndex, endIndex)) {
+            taskBitmap.add(startIndex, endIndex);
             return Optional.empty();
         }
-        List<BlockTaskPool> list = blockTaskPoolRepository.findByBlockHeightRange(startIndex, endIndex);
-        List<Long> ids = list.stream().map(p -> p.getBlockHeight()).collect(Collectors.toList());
+        blockTaskTracker.findBlockHeightsByBlockHeightRange(startIndex, endIndex).forEach(taskBitmap::add);
         List<BlockTaskPool> supplements = new ArrayList<>();
-        for (long tmpIndex = startIndex; tmpIndex <= endIndex; tmpIndex++) {
-            if (ids.indexOf(tmpIndex) >= 0) {
-                continue;
-            }
+        for (long tmpIndex : taskBitmap.missing(startIndex, endIndex)) {
             log.info("Successfully detect block {} is missing. Try to sync block again.", tmpIndex);
             BlockTaskPool pool = new BlockTaskPool().setBlockHeight(tmpIndex)
                     .setSyncStatus((short) TxInfoStatusEnum.ERROR.getStatus())
@@ -177,9 +213,33 @@ public class BlockCheckService {
         return Optional.of(supplements);
     }
 
+    /**
+     * Reset the blocks from start to end(inclusive) to init, and reopen their leases if they are finished.
+     */
+    private void resetToInit(long start, long end) {
+        blockTaskTracker.setSyncStatusByBlockHeightRange((short) TxInfoStatusEnum.INIT.getStatus(), new Date(), start,
+                end);
+        if (blockTaskLeaseService != null) {
+            blockTaskLeaseService.reopenLeases(start, end);
+        }
+    }
+
+    /** call the action with the start and end of every span of contiguous heights, the heights are sorted. */
+    private static void forEachSpan(List<Long> heights, BiConsumer<Long, Long> action) {
+        int i = 0;
+        while (i < heights.size()) {
+            int j = i + 1;
+            while (j < heights.size() && heights.get(j) <= heights.get(j - 1) + 1) {
+                j++;
+            }
+            action.accept(heights.get(i), heights.get(j - 1));
+            i = j;
+        }
+    }
+
     public boolean isComplete(long startBlockNumber, long currentMaxTaskPoolNumber) {
         long deserveCount = currentMaxTaskPoolNumber - startBlockNumber + 1;
-        long actualCount = blockTaskPoolRepository.countByBlockHeightRange(startBlockNumber, currentMaxTaskPoolNumber);
+        long actualCount = blockTaskTracker.countByBlockHeightRange(startBlockNumber, currentMaxTaskPoolNumber);
         log.info("Check task count from block {} to {}, deserve count is {}, and actual count is {}", startBlockNumber,
                 currentMaxTaskPoolNumber, deserveCount, actualCount);
         if (deserveCount == actualCount) {
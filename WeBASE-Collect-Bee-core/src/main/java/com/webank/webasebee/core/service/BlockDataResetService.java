@@ -25,8 +25,8 @@ import org.springframework.stereotype.Service;
 import com.webank.webasebee.common.enums.TxInfoStatusEnum;
 import com.webank.webasebee.common.tools.ResponseUtils;
 import com.webank.webasebee.common.vo.CommonResponse;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
 import com.webank.webasebee.db.entity.BlockTaskPool;
-import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
 
 import cn.hutool.core.date.DateUnit;
 import cn.hutool.core.date.DateUtil;
@@ -49,11 +49,11 @@ public class BlockDataResetService {
     @Autowired
     private BlockCrawlService singleBlockCrawlerService;
     @Autowired
-    private BlockTaskPoolRepository blockTaskPoolRepository;
+    private BlockTaskTracker blockTaskTracker;
 
     public CommonResponse resetBlockDataByBlockId(long blockHeight) throws IOException {
 
-        Optional<BlockTaskPool> blockTaskPool = blockTaskPoolRepository.findByBlockHeight(blockHeight);
+        Optional<BlockTaskPool> blockTaskPool = blockTaskTracker.findByBlockHeight(blockHeight);
         if (!blockTaskPool.isPresent()) {
             return CommonResponse.NOBLOCK;
         }
@@ -66,11 +66,11 @@ public class BlockDataResetService {
             }
         }
         log.info("begin to refetch block {}", blockHeight);
-        blockTaskPoolRepository.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.RESET.getStatus(), new Date(),
+        blockTaskTracker.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.RESET.getStatus(), new Date(),
                 blockHeight);
         rollBackService.rollback(blockHeight, blockHeight + 1);
         singleBlockCrawlerService.parse(blockHeight);
-        blockTaskPoolRepository.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.DONE.getStatus(), new Date(),
+        blockTaskTracker.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.DONE.getStatus(), new Date(),
                 blockHeight);
         log.info("block {} is reset!", blockHeight);
         return ResponseUtils.success();
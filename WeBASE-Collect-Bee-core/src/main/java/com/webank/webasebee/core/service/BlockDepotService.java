@@ -18,17 +18,21 @@ package com.webank.webasebee.core.service;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.base.Stopwatch;
 import com.webank.webasebee.common.bo.data.BlockInfoBO;
 import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
 import com.webank.webasebee.db.entity.BlockTaskPool;
-import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
 import com.webank.webasebee.extractor.ods.EthClient;
 
 import lombok.extern.slf4j.Slf4j;
@@ -47,37 +51,59 @@ public class BlockDepotService {
     @Autowired
     private BlockCrawlService BlockCrawlService;
     @Autowired
-    private BlockTaskPoolRepository blockTaskPoolRepository;
+    private BlockTaskTracker blockTaskTracker;
     @Autowired
     private BlockStoreService blockStoreService;
 
     @Autowired
     private EthClient ethClient;
+    @Autowired
+    private BlockWriteBehindService blockWriteBehindService;
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private DepotMetricsService depotMetricsService;
 
     public List<Block> fetchData(int count) {
-        List<BlockTaskPool> tasks = blockTaskPoolRepository
+        List<BlockTaskPool> tasks = blockTaskTracker
                 .findBySyncStatusOrderByBlockHeightLimit((short) TxInfoStatusEnum.INIT.getStatus(), count);
         return getTasks(tasks);
     }
 
     public List<Block> getTasks(List<BlockTaskPool> tasks) {
         List<Block> result = new ArrayList<>();
-        List<BlockTaskPool> pools = new ArrayList<>();
+        List<Long> doing = new ArrayList<>(tasks.size());
+        List<Long> errors = new ArrayList<>();
+        List<BigInteger> heights = new ArrayList<>(tasks.size());
         for (BlockTaskPool task : tasks) {
-            task.setSyncStatus((short) TxInfoStatusEnum.DOING.getStatus()).setDepotUpdatetime(new Date());
-            BigInteger bigBlockHeight = new BigInteger(Long.toString(task.getBlockHeight()));
-            Block block;
-            try {
-                block = ethClient.getBlock(bigBlockHeight);
-                result.add(block);
-                pools.add(task);
-            } catch (IOException e) {
-                log.error("Block {},  exception occur in job processing: {}", task.getBlockHeight(), e.getMessage());
-                blockTaskPoolRepository.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.ERROR.getStatus(),
-                        new Date(), task.getBlockHeight());
+            heights.add(BigInteger.valueOf(task.getBlockHeight()));
+        }
+        try {
+            result.addAll(ethClient.getBlocks(heights));
+            tasks.forEach(t -> doing.add(t.getBlockHeight()));
+        } catch (IOException e) {
+            log.warn("Batch fetch of {} blocks failed: {}, fall back to fetch one by one.", tasks.size(),
+                    e.getMessage());
+            for (BlockTaskPool task : tasks) {
+                try {
+                    result.add(ethClient.getBlock(BigInteger.valueOf(task.getBlockHeight())));
+                    doing.add(task.getBlockHeight());
+                } catch (IOException ex) {
+                    log.error("Block {},  exception occur in job processing: {}", task.getBlockHeight(),
+                            ex.getMessage());
+                    errors.add(task.getBlockHeight());
+                }
             }
         }
-        blockTaskPoolRepository.saveAll(pools);
+        if (!errors.isEmpty()) {
+            depotMetricsService.recordError(errors.size());
+            blockTaskTracker.setSyncStatusByBlockHeights((short) TxInfoStatusEnum.ERROR.getStatus(), new Date(),
+                    errors);
+        }
+        if (!doing.isEmpty()) {
+            blockTaskTracker.setSyncStatusByBlockHeights((short) TxInfoStatusEnum.DOING.getStatus(), new Date(),
+                    doing);
+        }
         log.info("Successful fetch {} Blocks.", result.size());
         return result;
     }
@@ -90,16 +116,54 @@ public class BlockDepotService {
 
     public void process(Block b, long total) {
         try {
+            Stopwatch st = Stopwatch.createStarted();
             BlockInfoBO blockInfo = BlockCrawlService.parse(b);
-            blockStoreService.store(blockInfo);
-            blockTaskPoolRepository.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.DONE.getStatus(), new Date(),
-                    b.getNumber().longValue());
-            log.info("Block {} of {} sync block succeed.", b.getNumber().longValue(), total);
+            depotMetricsService.recordParse(st.elapsed(TimeUnit.MILLISECONDS));
+            if (systemEnvironmentConfig.isWriteBehind()) {
+                blockWriteBehindService.submit(b, blockInfo, total);
+            } else {
+                store(b, blockInfo, total);
+            }
         } catch (IOException e) {
             log.error("block {}, exception occur in job processing: {}", b.getNumber().longValue(), e.getMessage());
-            blockTaskPoolRepository.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.ERROR.getStatus(), new Date(),
-                    b.getNumber().longValue());
+            setError(b.getNumber().longValue());
         }
     }
 
+    public void store(Block b, BlockInfoBO blockInfo, long total) {
+        Stopwatch st = Stopwatch.createStarted();
+        blockStoreService.storeAndFinish(Collections.singletonList(blockInfo));
+        depotMetricsService.recordStore(1, st.elapsed(TimeUnit.MILLISECONDS));
+        ethClient.evictBlock(b);
+        log.info("Block {} of {} sync block succeed.", b.getNumber().longValue(), total);
+    }
+
+    /**
+     * Store the blocks and flip their tasks to DONE with a single commit.
+     * 
+     * @param blocks
+     * @param blockInfos
+     * @param total
+     */
+    public void store(List<Block> blocks, List<BlockInfoBO> blockInfos, long total) {
+        Stopwatch st = Stopwatch.createStarted();
+        blockStoreService.storeAndFinish(blockInfos);
+        depotMetricsService.recordStore(blocks.size(), st.elapsed(TimeUnit.MILLISECONDS));
+        blocks.forEach(ethClient::evictBlock);
+        log.info("Block {} to {} of {} sync block succeed.", blocks.get(0).getNumber(),
+                blocks.get(blocks.size() - 1).getNumber(), total);
+    }
+
+    public void setError(long blockHeight) {
+        depotMetricsService.recordError(1);
+        blockTaskTracker.setSyncStatusByBlockHeight((short) TxInfoStatusEnum.ERROR.getStatus(), new Date(),
+                blockHeight);
+    }
+
+    public void setError(List<Long> blockHeights) {
+        depotMetricsService.recordError(blockHeights.size());
+        blockTaskTracker.setSyncStatusByBlockHeights((short) TxInfoStatusEnum.ERROR.getStatus(), new Date(),
+                blockHeights);
+    }
+
 }
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+
+import org.fisco.bcos.channel.client.BlockNotifyCallBack;
+import org.fisco.bcos.channel.client.Service;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BlockNotifyService receives the block number notifications pushed by the node over the channel, so the crawl loop
+ * can wake up as soon as a new block is sealed instead of sleeping system.frequency seconds. The notified height is
+ * only trusted for system.frequency seconds, after that the block number is polled by RPC again, which keeps the
+ * depot running if the notifications stop.
+ *
+ * @Description: BlockNotifyService
+ *
+ */
+@org.springframework.stereotype.Service
+@ConditionalOnProperty(name = "system.multiLiving", havingValue = "false")
+@Slf4j
+public class BlockNotifyService implements BlockNotifyCallBack {
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private Service service;
+    @Autowired
+    private BlockPrepareService blockPrepareService;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition newBlock = lock.newCondition();
+    private volatile long notifiedHeight = -1;
+    private volatile long notifiedTime;
+
+    @PostConstruct
+    public void init() {
+        if (systemEnvironmentConfig.isTailFollow()) {
+            service.setBlockNotifyCallBack(this);
+            log.info("Tail follow mode, wait for the block notifications of group {}",
+                    systemEnvironmentConfig.getGroupId());
+        }
+    }
+
+    @Override
+    public void onBlockNotify(int groupID, BigInteger blockNumber) {
+        if (groupID != systemEnvironmentConfig.getGroupId() || blockNumber == null) {
+            return;
+        }
+        log.debug("Block notify of group {}: {}", groupID, blockNumber);
+        lock.lock();
+        try {
+            if (blockNumber.longValue() > notifiedHeight) {
+                notifiedHeight = blockNumber.longValue();
+            }
+            notifiedTime = System.currentTimeMillis();
+            newBlock.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the current block height of the chain, from the notifications if they are fresh, otherwise by RPC.
+     * 
+     * @return block height
+     * @throws IOException
+     */
+    public long getCurrentBlockHeight() throws IOException {
+        if (systemEnvironmentConfig.isTailFollow() && notifiedHeight >= 0
+                && System.currentTimeMillis() - notifiedTime < systemEnvironmentConfig.getFrequency() * 1000) {
+            return notifiedHeight;
+        }
+        long height = blockPrepareService.getCurrentBlockHeight();
+        lock.lock();
+        try {
+            if (height > notifiedHeight) {
+                notifiedHeight = height;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return height;
+    }
+
+    /**
+     * Wait until a block higher than the given height is notified, at most system.frequency seconds.
+     * 
+     * @param height: the known block height of the chain
+     * @throws InterruptedException
+     */
+    public void waitForNewBlock(long height) throws InterruptedException {
+        long timeout = TimeUnit.SECONDS.toNanos(systemEnvironmentConfig.getFrequency());
+        if (!systemEnvironmentConfig.isTailFollow()) {
+            TimeUnit.NANOSECONDS.sleep(timeout);
+            return;
+        }
+        lock.lock();
+        try {
+            while (notifiedHeight <= height && timeout > 0) {
+                timeout = newBlock.awaitNanos(timeout);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.webank.webasebee.common.bo.data.BlockInfoBO;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.extractor.ods.EthClient;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BlockPipelineService runs a batch of depot tasks through three stages: fetch blocks from the node, parse them and
+ * store them. The stages have their own threads and are joined by bounded queues, so a slow stage blocks the stage
+ * before it instead of letting blocks pile up on the heap. If a stage thread dies, the run is cancelled, so the other
+ * stages never wait on it forever, and the tasks left DOING are retried after the depot timeout.
+ *
+ * @Description: BlockPipelineService
+ *
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "system.multiLiving", havingValue = "false")
+public class BlockPipelineService {
+    /** end of stream markers, one is offered per consumer thread when the previous stage finishes. */
+    private static final Block END_OF_BLOCKS = new Block();
+    private static final ParsedBlock END_OF_PARSED_BLOCKS = new ParsedBlock(null, null);
+    /** how long a blocked queue operation waits before it checks whether the run is cancelled. */
+    private static final long QUEUE_WAIT_MILLIS = 500;
+
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private BlockTaskTracker blockTaskTracker;
+    @Autowired
+    private BlockDepotService blockDepotService;
+    @Autowired
+    private BlockCrawlService blockCrawlService;
+    @Autowired
+    private EthClient ethClient;
+
+    private ExecutorService fetchExecutor;
+    private ExecutorService parseExecutor;
+    private ExecutorService storeExecutor;
+
+    @PostConstruct
+    public void init() {
+        fetchExecutor = newStageExecutor("fetch", systemEnvironmentConfig.getPipelineFetchThreads());
+        parseExecutor = newStageExecutor("parse", systemEnvironmentConfig.getPipelineParseThreads());
+        storeExecutor = newStageExecutor("store", systemEnvironmentConfig.getPipelineStoreThreads());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        fetchExecutor.shutdownNow();
+        parseExecutor.shutdownNow();
+        storeExecutor.shutdownNow();
+    }
+
+    /**
+     * Fetch at most count init tasks and push them through the pipeline, return when all of them are done or failed.
+     * 
+     * @param count
+     * @param total
+     * @throws InterruptedException
+     */
+    public void process(int count, long total) throws InterruptedException {
+        List<BlockTaskPool> tasks = blockTaskTracker
+                .findBySyncStatusOrderByBlockHeightLimit((short) TxInfoStatusEnum.INIT.getStatus(), count);
+        if (tasks.isEmpty()) {
+            return;
+        }
+        Stopwatch st = Stopwatch.createStarted();
+        Date now = new Date();
+        for (BlockTaskPool task : tasks) {
+            task.setSyncStatus((short) TxInfoStatusEnum.DOING.getStatus()).setDepotUpdatetime(now);
+        }
+        blockTaskTracker.setSyncStatusByBlockHeights((short) TxInfoStatusEnum.DOING.getStatus(), now,
+                tasks.stream().map(BlockTaskPool::getBlockHeight).collect(Collectors.toList()));
+
+        int fetchThreads = Math.max(1, systemEnvironmentConfig.getPipelineFetchThreads());
+        int parseThreads = Math.max(1, systemEnvironmentConfig.getPipelineParseThreads());
+        int storeThreads = Math.max(1, systemEnvironmentConfig.getPipelineStoreThreads());
+        int queueSize = Math.max(1, systemEnvironmentConfig.getPipelineQueueSize());
+        ConcurrentLinkedQueue<BlockTaskPool> taskQueue = new ConcurrentLinkedQueue<>(tasks);
+        BlockingQueue<Block> blockQueue = new ArrayBlockingQueue<>(queueSize + parseThreads);
+        BlockingQueue<ParsedBlock> parsedQueue = new ArrayBlockingQueue<>(queueSize + storeThreads);
+        CountDownLatch fetchLatch = new CountDownLatch(fetchThreads);
+        CountDownLatch parseLatch = new CountDownLatch(parseThreads);
+        CountDownLatch storeLatch = new CountDownLatch(storeThreads);
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        for (int i = 0; i < fetchThreads; i++) {
+            fetchExecutor.execute(() -> runStage(fetchLatch, failed, () -> fetch(taskQueue, blockQueue, failed)));
+        }
+        for (int i = 0; i < parseThreads; i++) {
+            parseExecutor.execute(() -> runStage(parseLatch, failed, () -> parse(blockQueue, parsedQueue, failed)));
+        }
+        for (int i = 0; i < storeThreads; i++) {
+            storeExecutor.execute(() -> runStage(storeLatch, failed, () -> store(parsedQueue, total, failed)));
+        }
+        fetchLatch.await();
+        for (int i = 0; i < parseThreads; i++) {
+            if (!offer(blockQueue, END_OF_BLOCKS, failed)) {
+                break;
+            }
+        }
+        parseLatch.await();
+        for (int i = 0; i < storeThreads; i++) {
+            if (!offer(parsedQueue, END_OF_PARSED_BLOCKS, failed)) {
+                break;
+            }
+        }
+        storeLatch.await();
+        if (failed.get()) {
+            log.error("Pipeline is cancelled since a stage failed, the unfinished blocks are retried after timeout.");
+            return;
+        }
+        log.info("Pipeline processed {} blocks, useTime {} ms", tasks.size(), st.stop().elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    private void fetch(ConcurrentLinkedQueue<BlockTaskPool> taskQueue, BlockingQueue<Block> blockQueue,
+            AtomicBoolean failed) throws InterruptedException {
+        BlockTaskPool task;
+        while (!failed.get() && (task = taskQueue.poll()) != null) {
+            try {
+                Block block = ethClient.getBlock(BigInteger.valueOf(task.getBlockHeight()));
+                if (block == null) {
+                    log.error("Block {} not found on the node.", task.getBlockHeight());
+                    setError(task.getBlockHeight());
+                    continue;
+                }
+                if (!offer(blockQueue, block, failed)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Block {}, exception occur in fetch stage: {}", task.getBlockHeight(), e.getMessage());
+                setError(task.getBlockHeight());
+            }
+        }
+    }
+
+    private void parse(BlockingQueue<Block> blockQueue, BlockingQueue<ParsedBlock> parsedQueue, AtomicBoolean failed)
+            throws InterruptedException {
+        Block block;
+        while ((block = poll(blockQueue, failed)) != null && block != END_OF_BLOCKS) {
+            try {
+                if (!offer(parsedQueue, new ParsedBlock(block, blockCrawlService.parse(block)), failed)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Block {}, exception occur in parse stage: {}", block.getNumber(), e.getMessage());
+                setError(block.getNumber().longValue());
+            }
+        }
+    }
+
+    private void store(BlockingQueue<ParsedBlock> parsedQueue, long total, AtomicBoolean failed)
+            throws InterruptedException {
+        int blocksPerCommit = Math.max(1, systemEnvironmentConfig.getBlocksPerCommit());
+        List<ParsedBlock> group = new ArrayList<>(blocksPerCommit);
+        boolean end = false;
+        while (!end) {
+            ParsedBlock first = poll(parsedQueue, failed);
+            if (first == null) {
+                return;
+            }
+            group.add(first);
+            parsedQueue.drainTo(group, blocksPerCommit - 1);
+            long ends = group.stream().filter(p -> p == END_OF_PARSED_BLOCKS).count();
+            if (ends > 0) {
+                group.removeIf(p -> p == END_OF_PARSED_BLOCKS);
+                end = true;
+                // give back the end markers of the other store threads.
+                for (int i = 1; i < ends; i++) {
+                    if (!offer(parsedQueue, END_OF_PARSED_BLOCKS, failed)) {
+                        break;
+                    }
+                }
+            }
+            if (!group.isEmpty()) {
+                storeGroup(group, total);
+            }
+            group.clear();
+        }
+    }
+
+    private void storeGroup(List<ParsedBlock> group, long total) {
+        List<Block> blocks = new ArrayList<>(group.size());
+        List<BlockInfoBO> blockInfos = new ArrayList<>(group.size());
+        for (ParsedBlock parsed : group) {
+            blocks.add(parsed.block);
+            blockInfos.add(parsed.blockInfo);
+        }
+        try {
+            blockDepotService.store(blocks, blockInfos, total);
+        } catch (Exception e) {
+            log.error("Block {} to {}, exception occur in store stage: {}", blocks.get(0).getNumber(),
+                    blocks.get(blocks.size() - 1).getNumber(), e.getMessage());
+            setError(blocks.stream().map(b -> b.getNumber().longValue()).collect(Collectors.toList()));
+        }
+    }
+
+    private void setError(long blockHeight) {
+        setError(Collections.singletonList(blockHeight));
+    }
+
+    /**
+     * Mark the blocks as error in one update. The failure of marking is only logged, since the blocks are left DOING
+     * and will be retried after timeout, while an exception here would kill the stage thread.
+     */
+    private void setError(List<Long> blockHeights) {
+        try {
+            blockDepotService.setError(blockHeights);
+        } catch (RuntimeException e) {
+            log.error("Block {} to {}, set error status failed: {}", blockHeights.get(0),
+                    blockHeights.get(blockHeights.size() - 1), e.getMessage());
+        }
+    }
+
+    /**
+     * Run a stage, if it ends abnormally the run is marked failed, so that the other stages stop waiting on it.
+     */
+    private void runStage(CountDownLatch latch, AtomicBoolean failed, StageTask stageTask) {
+        boolean completed = false;
+        try {
+            stageTask.run();
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Pipeline stage {} failed: ", Thread.currentThread().getName(), e);
+        } finally {
+            if (!completed) {
+                failed.set(true);
+            }
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Put the item into the queue, waiting for space unless the run fails.
+     * 
+     * @return false if the run fails before the item is put.
+     */
+    private static <T> boolean offer(BlockingQueue<T> queue, T item, AtomicBoolean failed)
+            throws InterruptedException {
+        while (!queue.offer(item, QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failed.get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Take an item from the queue, waiting for one unless the run fails.
+     * 
+     * @return null if the run fails before an item is available.
+     */
+    private static <T> T poll(BlockingQueue<T> queue, AtomicBoolean failed) throws InterruptedException {
+        T item;
+        while ((item = queue.poll(QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (failed.get()) {
+                return null;
+            }
+        }
+        return item;
+    }
+
+    private static ExecutorService newStageExecutor(String stage, int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads),
+                new ThreadFactoryBuilder().setNameFormat("pipeline-" + stage + "-%d").setDaemon(true).build());
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws InterruptedException;
+    }
+
+    private static class ParsedBlock {
+        private final Block block;
+        private final BlockInfoBO blockInfo;
+
+        ParsedBlock(Block block, BlockInfoBO blockInfo) {
+            this.block = block;
+            this.blockInfo = blockInfo;
+        }
+    }
+}
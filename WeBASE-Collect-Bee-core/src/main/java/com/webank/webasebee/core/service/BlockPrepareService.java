@@ -17,20 +17,13 @@ package com.webank.webasebee.core.service;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.List;
-import java.util.Optional;
 
 import org.fisco.bcos.web3j.protocol.Web3j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.google.common.collect.Lists;
-import com.webank.webasebee.common.constants.BlockConstants;
-import com.webank.webasebee.common.enums.BlockCertaintyEnum;
-import com.webank.webasebee.common.enums.TxInfoStatusEnum;
-import com.webank.webasebee.db.entity.BlockTaskPool;
-import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -47,17 +40,12 @@ import lombok.extern.slf4j.Slf4j;
 public class BlockPrepareService {
 
     @Autowired
-    private BlockTaskPoolRepository blockTaskPoolRepository;
+    private BlockTaskTracker blockTaskTracker;
     @Autowired
     private Web3j web3j;
 
     public long getTaskPoolHeight() {
-        Optional<BlockTaskPool> item = blockTaskPoolRepository.findTopByOrderByBlockHeightDesc();
-        long height = 0;
-        if (item.isPresent()) {
-            height = item.get().getBlockHeight() + 1;
-        }
-        return height;
+        return blockTaskTracker.getTaskPoolHeight();
     }
 
     public long getCurrentBlockHeight() throws IOException {
@@ -70,22 +58,7 @@ public class BlockPrepareService {
     @Transactional
     public void prepareTask(long begin, long end, boolean certainty) {
         log.info("Begin to prepare sync blocks from {} to {}", begin, end);
-        List<BlockTaskPool> list = Lists.newArrayList();
-        for (long i = begin; i <= end; i++) {
-            BlockTaskPool pool =
-                    new BlockTaskPool().setBlockHeight(i).setSyncStatus((short) TxInfoStatusEnum.INIT.getStatus());
-            if (certainty) {
-                pool.setCertainty((short) BlockCertaintyEnum.FIXED.getCertainty());
-            } else {
-                if (i <= end - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER) {
-                    pool.setCertainty((short) BlockCertaintyEnum.FIXED.getCertainty());
-                } else {
-                    pool.setCertainty((short) BlockCertaintyEnum.UNCERTAIN.getCertainty());
-                }
-            }
-            list.add(pool);
-        }
-        blockTaskPoolRepository.saveAll(list);
+        blockTaskTracker.prepareTask(begin, end, certainty);
         log.info("Sync blocks from {} to {} are prepared.", begin, end);
     }
 
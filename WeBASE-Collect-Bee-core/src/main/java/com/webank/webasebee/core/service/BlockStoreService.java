@@ -15,16 +15,21 @@
  */
 package com.webank.webasebee.core.service;
 
+import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.webank.webasebee.common.bo.data.BlockInfoBO;
 import com.webank.webasebee.common.bo.data.CommonBO;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
 import com.webank.webasebee.db.dao.AccountInfoDAO;
 import com.webank.webasebee.db.dao.BlockCommonDAO;
 import com.webank.webasebee.db.dao.BlockDetailInfoDAO;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
 import com.webank.webasebee.db.dao.BlockTxDetailInfoDAO;
 
 /**
@@ -45,6 +50,23 @@ public class BlockStoreService {
     private BlockTxDetailInfoDAO blockTxDetailInfoDao;
     @Autowired
     private BlockCommonDAO blockEventDao;
+    @Autowired
+    private BlockTaskTracker blockTaskTracker;
+
+    /**
+     * Store all the rows of the blocks and flip their tasks to DONE in a single transaction, so a block is either
+     * stored completely or not at all.
+     * 
+     * @param blockInfos
+     */
+    @Transactional
+    public void storeAndFinish(List<BlockInfoBO> blockInfos) {
+        for (BlockInfoBO blockInfo : blockInfos) {
+            store(blockInfo);
+        }
+        blockTaskTracker.setSyncStatusByBlockHeights((short) TxInfoStatusEnum.DONE.getStatus(), new Date(),
+                blockInfos.stream().map(b -> b.getBlockDetailInfo().getBlockHeight()).collect(Collectors.toList()));
+    }
 
     public void store(BlockInfoBO blockInfo) {
         blockDetailInfoDao.save(blockInfo.getBlockDetailInfo());
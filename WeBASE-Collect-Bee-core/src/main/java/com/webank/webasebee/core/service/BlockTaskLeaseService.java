@@ -0,0 +1,235 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+import com.webank.webasebee.db.entity.BlockTaskLease;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.db.entity.InstanceLoad;
+import com.webank.webasebee.db.repository.BlockTaskLeaseRepository;
+import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
+import com.webank.webasebee.db.repository.InstanceLoadRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BlockTaskLeaseService hands out the prepared blocks of the multi-living mode as leases of contiguous heights. An
+ * instance claims tasks only from the lease it holds, so neighboring blocks are crawled by the same instance. A lease
+ * is renewed on every claim, and is taken over by other instances once it expires.
+ * 
+ * Each instance reports its pending blocks and speed to the instance_load table. When stealing is on, an instance
+ * which finds no free lease splits the lease of the instance with the most remaining time, and takes the second half
+ * of its init blocks.
+ *
+ * @Description: BlockTaskLeaseService
+ *
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "system.multiLiving", havingValue = "true")
+public class BlockTaskLeaseService {
+    @Autowired
+    private BlockTaskLeaseRepository blockTaskLeaseRepository;
+    @Autowired
+    private BlockTaskPoolRepository blockTaskPoolRepository;
+    @Autowired
+    private InstanceLoadRepository instanceLoadRepository;
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final String owner = UUID.randomUUID().toString();
+    private final AtomicLong claimedBlocks = new AtomicLong();
+    private long lastReportTime = System.currentTimeMillis();
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Split the prepared blocks from begin to end(inclusive) into leases, the blocks already leased are skipped.
+     */
+    public void createLeases(long begin, long end) {
+        Optional<BlockTaskLease> last = blockTaskLeaseRepository.findTopByOrderByEndHeightDesc();
+        long from = last.isPresent() ? Math.max(begin, last.get().getEndHeight() + 1) : begin;
+        List<BlockTaskLease> leases = new ArrayList<>();
+        for (long i = from; i <= end; i += systemEnvironmentConfig.getRangeLeaseSize()) {
+            leases.add(new BlockTaskLease().setStartHeight(i)
+                    .setEndHeight(Math.min(end, i + systemEnvironmentConfig.getRangeLeaseSize() - 1)));
+        }
+        if (!leases.isEmpty()) {
+            blockTaskLeaseRepository.saveAll(leases);
+            log.info("Create {} leases of blocks from {} to {}", leases.size(), from, end);
+        }
+    }
+
+    /**
+     * Claim at most limit init tasks of the lease held by this instance. A lease is finished when all of its blocks
+     * are done, which is checked by the finish statement itself, and then the next free or expired lease is taken. A
+     * finished lease is reopened by reopenLeases if some of its blocks are reset to init later.
+     */
+    public List<BlockTaskPool> claimTasks(int limit) {
+        Optional<BlockTaskLease> lease = acquire();
+        while (lease.isPresent()) {
+            BlockTaskLease l = lease.get();
+            String token = UUID.randomUUID().toString();
+            int count = blockTaskPoolRepository.claimBySyncStatusAndBlockHeightRange(
+                    (short) TxInfoStatusEnum.INIT.getStatus(), (short) TxInfoStatusEnum.DOING.getStatus(), token,
+                    new Date(), l.getStartHeight(), l.getEndHeight(), limit);
+            if (count > 0) {
+                claimedBlocks.addAndGet(count);
+                return blockTaskPoolRepository.findByDepotOwnerOrderByBlockHeight(token);
+            }
+            if (blockTaskLeaseRepository.finish(l.getPkId(), owner, (short) TxInfoStatusEnum.DONE.getStatus()) == 0) {
+                // the rest blocks are doing or waiting for the error check to reset them
+                return Collections.emptyList();
+            }
+            log.info("Lease of blocks from {} to {} is finished.", l.getStartHeight(), l.getEndHeight());
+            lease = acquire();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Reopen the finished leases of the blocks from start to end(inclusive), which are reset to init after their
+     * leases are finished, eg. by a fork found on the uncertain blocks. Otherwise no instance claims them again.
+     */
+    public void reopenLeases(long start, long end) {
+        if (!systemEnvironmentConfig.isRangeLease()) {
+            return;
+        }
+        int count = blockTaskLeaseRepository.reopen(start, end);
+        if (count > 0) {
+            log.info("Reopen {} leases of blocks from {} to {}", count, start, end);
+        }
+    }
+
+    private Optional<BlockTaskLease> acquire() {
+        Date expireTime = new Date(System.currentTimeMillis() + systemEnvironmentConfig.getRangeLeaseTimeout());
+        List<BlockTaskLease> held = blockTaskLeaseRepository.findByOwnerAndFinishedOrderByStartHeight(owner, false);
+        for (BlockTaskLease lease : held) {
+            if (blockTaskLeaseRepository.renew(lease.getPkId(), owner, expireTime) > 0) {
+                return Optional.of(lease);
+            }
+        }
+        if (blockTaskLeaseRepository.acquire(owner, expireTime, new Date()) == 0) {
+            return systemEnvironmentConfig.isRangeLeaseSteal() ? steal(expireTime) : Optional.empty();
+        }
+        held = blockTaskLeaseRepository.findByOwnerAndFinishedOrderByStartHeight(owner, false);
+        if (held.isEmpty()) {
+            return Optional.empty();
+        }
+        log.info("Take the lease of blocks from {} to {}", held.get(0).getStartHeight(), held.get(0).getEndHeight());
+        return Optional.of(held.get(0));
+    }
+
+    /**
+     * Split a lease of the other alive instances, from the one with the most remaining time. The lease is shrunk only
+     * if it is not changed since it is read, and the shrink and the new lease are saved in one transaction, so no
+     * block is left without a lease.
+     */
+    private Optional<BlockTaskLease> steal(Date expireTime) {
+        Date aliveTime = new Date(System.currentTimeMillis() - systemEnvironmentConfig.getRangeLeaseTimeout());
+        List<InstanceLoad> loads = instanceLoadRepository.findByUpdateTimeGreaterThan(aliveTime);
+        loads.sort(Comparator.comparingDouble(InstanceLoad::remainingTime).reversed());
+        for (InstanceLoad load : loads) {
+            if (load.getOwner().equals(owner)) {
+                continue;
+            }
+            for (BlockTaskLease lease : blockTaskLeaseRepository
+                    .findByOwnerAndFinishedOrderByStartHeight(load.getOwner(), false)) {
+                Optional<BlockTaskPool> lowest = blockTaskPoolRepository
+                        .findFirstByBlockHeightBetweenAndSyncStatusOrderByBlockHeight(lease.getStartHeight(),
+                                lease.getEndHeight(), (short) TxInfoStatusEnum.INIT.getStatus());
+                if (!lowest.isPresent()) {
+                    continue;
+                }
+                long remaining = lease.getEndHeight() - lowest.get().getBlockHeight() + 1;
+                if (remaining < systemEnvironmentConfig.getRangeLeaseMinSteal()) {
+                    continue;
+                }
+                long mid = lowest.get().getBlockHeight() + remaining / 2;
+                BlockTaskLease stolen = transactionTemplate.execute(status -> {
+                    if (blockTaskLeaseRepository.shrink(lease.getPkId(), load.getOwner(), lease.getEndHeight(),
+                            mid - 1) == 0) {
+                        return null;
+                    }
+                    return blockTaskLeaseRepository.save(new BlockTaskLease().setStartHeight(mid)
+                            .setEndHeight(lease.getEndHeight()).setOwner(owner).setExpireTime(expireTime));
+                });
+                if (stolen != null) {
+                    log.info("Steal blocks from {} to {} of instance {}, whose remaining time is {} s", mid,
+                            lease.getEndHeight(), load.getOwner(), (long) load.remainingTime());
+                    return Optional.of(stolen);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Report the blocks not done of the leases held by this instance, and the speed of claiming blocks.
+     */
+    @Scheduled(fixedDelayString = "${system.instanceLoadInterval:10000}")
+    public void report() {
+        if (!systemEnvironmentConfig.isRangeLease()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        double blocksPerSecond = claimedBlocks.getAndSet(0) * 1000.0 / Math.max(1, now - lastReportTime);
+        lastReportTime = now;
+        long pending = 0;
+        for (BlockTaskLease lease : blockTaskLeaseRepository.findByOwnerAndFinishedOrderByStartHeight(owner, false)) {
+            pending += blockTaskPoolRepository.countByBlockHeightBetweenAndSyncStatusNot(lease.getStartHeight(),
+                    lease.getEndHeight(), (short) TxInfoStatusEnum.DONE.getStatus());
+        }
+        InstanceLoad load = instanceLoadRepository.findByOwner(owner).orElse(new InstanceLoad().setOwner(owner));
+        instanceLoadRepository.save(load.setPendingBlocks(pending).setBlocksPerSecond(blocksPerSecond)
+                .setUpdateTime(new Date(now)));
+        log.debug("Instance {} has {} pending blocks, and claims {} blocks per second", owner, pending,
+                blocksPerSecond);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (systemEnvironmentConfig.isRangeLease()) {
+            instanceLoadRepository.deleteByOwner(owner);
+        }
+    }
+}
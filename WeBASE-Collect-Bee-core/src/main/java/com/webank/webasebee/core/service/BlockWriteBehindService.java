@@ -0,0 +1,141 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.google.common.base.Stopwatch;
+import com.webank.webasebee.common.bo.data.BlockInfoBO;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
+import com.webank.webasebee.extractor.ods.EthClient;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BlockWriteBehindService collects parsed blocks from the depot worker threads and stores them in one transaction when
+ * the buffered rows reach system.writeBehindMaxRows or the oldest block has waited system.writeBehindMaxDelay ms. The
+ * tasks of the buffered blocks are flipped to DONE in the same transaction, so they are only marked after the flush
+ * succeeds.
+ *
+ * @Description: BlockWriteBehindService
+ *
+ */
+@Service
+@Slf4j
+public class BlockWriteBehindService {
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private BlockStoreService blockStoreService;
+    @Autowired
+    private BlockTaskTracker blockTaskTracker;
+    @Autowired
+    private EthClient ethClient;
+    @Autowired
+    private DepotMetricsService depotMetricsService;
+
+    /** guards the buffer, held by the flushing thread during the flush to keep the buffer bounded. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Block> blocks = new ArrayList<>();
+    private List<BlockInfoBO> blockInfos = new ArrayList<>();
+    private int rows;
+    private long oldestTime;
+    private long total;
+
+    public void submit(Block block, BlockInfoBO blockInfo, long total) {
+        lock.lock();
+        try {
+            if (blocks.isEmpty()) {
+                oldestTime = System.currentTimeMillis();
+            }
+            blocks.add(block);
+            blockInfos.add(blockInfo);
+            rows += countRows(blockInfo);
+            this.total = total;
+            if (rows >= systemEnvironmentConfig.getWriteBehindMaxRows()) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${system.writeBehindMaxDelay:1000}")
+    public void flushIfExpired() {
+        lock.lock();
+        try {
+            if (!blocks.isEmpty()
+                    && System.currentTimeMillis() - oldestTime >= systemEnvironmentConfig.getWriteBehindMaxDelay()) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        lock.lock();
+        try {
+            if (!blocks.isEmpty()) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush() {
+        List<Block> flushBlocks = blocks;
+        List<BlockInfoBO> flushBlockInfos = blockInfos;
+        int flushRows = rows;
+        blocks = new ArrayList<>();
+        blockInfos = new ArrayList<>();
+        rows = 0;
+        Stopwatch st = Stopwatch.createStarted();
+        try {
+            blockStoreService.storeAndFinish(flushBlockInfos);
+            depotMetricsService.recordStore(flushBlocks.size(), st.elapsed(TimeUnit.MILLISECONDS));
+            flushBlocks.forEach(ethClient::evictBlock);
+            log.info("Write behind flush {} blocks and {} rows of {} succeed, useTime {} ms", flushBlocks.size(),
+                    flushRows, total, st.stop().elapsed(TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            log.error("Write behind flush {} blocks failed: {}", flushBlocks.size(), e.getMessage());
+            depotMetricsService.recordError(flushBlocks.size());
+            blockTaskTracker.setSyncStatusByBlockHeights((short) TxInfoStatusEnum.ERROR.getStatus(), new Date(),
+                    flushBlocks.stream().map(b -> b.getNumber().longValue()).collect(Collectors.toList()));
+        }
+    }
+
+    private static int countRows(BlockInfoBO blockInfo) {
+        return 1 + blockInfo.getAccountInfoList().size() + blockInfo.getBlockTxDetailInfoList().size()
+                + blockInfo.getEventInfoList().size() + blockInfo.getMethodInfoList().size();
+    }
+}
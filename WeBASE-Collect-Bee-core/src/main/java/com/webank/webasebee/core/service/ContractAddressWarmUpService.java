@@ -0,0 +1,70 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.google.common.base.Stopwatch;
+import com.webank.webasebee.db.entity.AccountInfo;
+import com.webank.webasebee.db.repository.AccountInfoRepository;
+import com.webank.webasebee.parser.service.ContractAddressCacheService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * ContractAddressWarmUpService loads the stored accounts into the contract address cache at startup.
+ *
+ * @Description: ContractAddressWarmUpService
+ *
+ */
+@Service
+@Slf4j
+public class ContractAddressWarmUpService {
+    private static final int PAGE_SIZE = 1000;
+
+    @Autowired
+    private AccountInfoRepository accountInfoRepository;
+    @Autowired
+    private ContractAddressCacheService contractAddressCacheService;
+
+    @PostConstruct
+    public void warmUp() {
+        Stopwatch st = Stopwatch.createStarted();
+        int count = 0;
+        Page<AccountInfo> page = accountInfoRepository.findAll(PageRequest.of(0, PAGE_SIZE));
+        while (true) {
+            for (AccountInfo account : page.getContent()) {
+                if (contractAddressCacheService.warm(account.getContractAddress(), account.getContractName(),
+                        account.getBlockHeight())) {
+                    count++;
+                }
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            page = accountInfoRepository.findAll(page.nextPageable());
+        }
+        log.info("Warm up {} contract addresses from account_info, useTime {} ms", count,
+                st.stop().elapsed(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CrawlBatchUnitService decides how many blocks the single instance depot prepares and fetches in a round.
+ * 
+ * If system.crawlBatchUnitAdaptive is false, it is always system.crawlBatchUnit. Otherwise the batch unit is the
+ * number of blocks which can be stored in system.crawlBatchTargetTime ms, computed from the measured per-block latency,
+ * at most doubled per round, halved when the error rate exceeds system.crawlBatchMaxErrorRate and bounded by
+ * system.crawlBatchUnitMin and system.crawlBatchUnitMax. Near the chain head the batch unit is the remaining distance,
+ * so the blocks are processed as soon as they are produced.
+ *
+ * @Description: CrawlBatchUnitService
+ *
+ */
+@ConditionalOnProperty(name = "system.multiLiving", havingValue = "false")
+@Service
+@Slf4j
+public class CrawlBatchUnitService {
+    /** smoothing factor of the per-block latency. */
+    private static final double ALPHA = 0.3;
+
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private DepotMetricsService depotMetricsService;
+
+    private int batchUnit;
+    private double blockLatency;
+    private long lastTime;
+    private long lastStored;
+    private long lastErrors;
+
+    /**
+     * Get the batch unit of the next round, called once per round by the crawl loop.
+     * 
+     * @param fromHeight: the first block height to prepare
+     * @param chainHeight: the current block height of the chain
+     * @return batch unit
+     */
+    public synchronized int next(long fromHeight, long chainHeight) {
+        if (!systemEnvironmentConfig.isCrawlBatchUnitAdaptive()) {
+            return systemEnvironmentConfig.getCrawlBatchUnit();
+        }
+        int min = systemEnvironmentConfig.getCrawlBatchUnitMin();
+        int max = systemEnvironmentConfig.getCrawlBatchUnitMax();
+        long now = System.currentTimeMillis();
+        long stored = depotMetricsService.getTotalStoredBlocks();
+        long errors = depotMetricsService.getTotalErrorBlocks();
+        if (batchUnit == 0) {
+            batchUnit = Math.max(min, Math.min(max, systemEnvironmentConfig.getCrawlBatchUnit()));
+        } else {
+            long storedDelta = stored - lastStored;
+            long errorDelta = errors - lastErrors;
+            if (storedDelta > 0) {
+                double latency = (double) (now - lastTime) / storedDelta;
+                blockLatency = blockLatency == 0 ? latency : ALPHA * latency + (1 - ALPHA) * blockLatency;
+            }
+            int target = batchUnit;
+            if (storedDelta + errorDelta > 0
+                    && (double) errorDelta / (storedDelta + errorDelta) > systemEnvironmentConfig
+                            .getCrawlBatchMaxErrorRate()) {
+                target = batchUnit / 2;
+            } else if (blockLatency > 0) {
+                target = (int) Math.min(2L * batchUnit,
+                        (long) (systemEnvironmentConfig.getCrawlBatchTargetTime() / blockLatency));
+            }
+            batchUnit = Math.max(min, Math.min(max, target));
+        }
+        lastTime = now;
+        lastStored = stored;
+        lastErrors = errors;
+        long distance = chainHeight - fromHeight + 1;
+        int unit = distance < batchUnit ? (int) Math.max(min, distance) : batchUnit;
+        log.debug("Batch unit {}, per block latency {} ms, distance to chain head {}", unit,
+                String.format("%.1f", blockLatency), distance);
+        return unit;
+    }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * DepotMetricsService records the queue wait, parse and store time of the depot blocks, logs them with the active
+ * threads of the depot executor, and resizes the executor when system.depotAdaptive is true.
+ * 
+ * The resize is a hill climbing on the block throughput: the executor grows while the crawl loop is waiting for free
+ * threads and the throughput keeps increasing, and shrinks when the average parse time exceeds
+ * system.depotMaxNodeLatency or the average store time exceeds system.depotMaxDbLatency.
+ *
+ * @Description: DepotMetricsService
+ *
+ */
+@Service
+@Slf4j
+public class DepotMetricsService {
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+
+    private volatile ThreadPoolTaskExecutor executor;
+
+    private final LongAdder queuedTasks = new LongAdder();
+    private final LongAdder queueWaitTime = new LongAdder();
+    private final LongAdder blockedSubmits = new LongAdder();
+    private final LongAdder parsedBlocks = new LongAdder();
+    private final LongAdder parseTime = new LongAdder();
+    private final LongAdder storedBlocks = new LongAdder();
+    private final LongAdder storeTime = new LongAdder();
+    /** never reset, read by the batch unit controller. */
+    private final LongAdder totalStoredBlocks = new LongAdder();
+    private final LongAdder totalErrorBlocks = new LongAdder();
+
+    private long lastReportTime = System.currentTimeMillis();
+    private double lastThroughput;
+    private int direction = 1;
+
+    public void register(ThreadPoolTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Wrap a task submitted to the depot executor to record how long it waits in the queue.
+     * 
+     * @param task
+     * @return wrapped task
+     */
+    public Runnable decorate(Runnable task) {
+        long submitTime = System.currentTimeMillis();
+        return () -> {
+            queuedTasks.increment();
+            queueWaitTime.add(System.currentTimeMillis() - submitTime);
+            task.run();
+        };
+    }
+
+    public void recordBlockedSubmit() {
+        blockedSubmits.increment();
+    }
+
+    public void recordParse(long millis) {
+        parsedBlocks.increment();
+        parseTime.add(millis);
+    }
+
+    public void recordStore(int blocks, long millis) {
+        storedBlocks.add(blocks);
+        storeTime.add(millis);
+        totalStoredBlocks.add(blocks);
+    }
+
+    public void recordError(int blocks) {
+        totalErrorBlocks.add(blocks);
+    }
+
+    public long getTotalStoredBlocks() {
+        return totalStoredBlocks.sum();
+    }
+
+    public long getTotalErrorBlocks() {
+        return totalErrorBlocks.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${system.depotMetricsInterval:60000}")
+    public void report() {
+        long now = System.currentTimeMillis();
+        long interval = Math.max(1, now - lastReportTime);
+        lastReportTime = now;
+        long tasks = queuedTasks.sumThenReset();
+        long waitTime = queueWaitTime.sumThenReset();
+        long blocked = blockedSubmits.sumThenReset();
+        long parsed = parsedBlocks.sumThenReset();
+        long parseMillis = parseTime.sumThenReset();
+        long stored = storedBlocks.sumThenReset();
+        long storeMillis = storeTime.sumThenReset();
+        double avgWait = tasks == 0 ? 0 : (double) waitTime / tasks;
+        double avgParse = parsed == 0 ? 0 : (double) parseMillis / parsed;
+        double avgStore = stored == 0 ? 0 : (double) storeMillis / stored;
+        double throughput = stored * 1000.0 / interval;
+        ThreadPoolTaskExecutor e = executor;
+        if (e == null) {
+            log.info("Depot metrics: {} blocks/s, avg parse {} ms, avg store {} ms", String.format("%.2f", throughput),
+                    String.format("%.1f", avgParse), String.format("%.1f", avgStore));
+            return;
+        }
+        log.info(
+                "Depot metrics: {} blocks/s, active threads {} of {}, queue {}, avg queue wait {} ms, "
+                        + "blocked submits {}, avg parse {} ms, avg store {} ms",
+                String.format("%.2f", throughput), e.getActiveCount(), e.getPoolSize(),
+                e.getThreadPoolExecutor().getQueue().size(), String.format("%.1f", avgWait), blocked,
+                String.format("%.1f", avgParse), String.format("%.1f", avgStore));
+        if (systemEnvironmentConfig.isDepotAdaptive() && stored > 0) {
+            adjust(e, blocked > 0, throughput, avgParse, avgStore);
+        }
+    }
+
+    private void adjust(ThreadPoolTaskExecutor e, boolean busy, double throughput, double avgParse,
+            double avgStore) {
+        int size = e.getCorePoolSize();
+        int target = size;
+        if (avgStore > systemEnvironmentConfig.getDepotMaxDbLatency()
+                || avgParse > systemEnvironmentConfig.getDepotMaxNodeLatency()) {
+            // the DB or the node is overloaded, back off.
+            direction = -1;
+            target = size - 1;
+        } else if (busy) {
+            // keep the direction while the throughput increases, otherwise turn back.
+            if (throughput < lastThroughput) {
+                direction = -direction;
+            }
+            target = size + direction;
+        }
+        lastThroughput = throughput;
+        target = Math.max(systemEnvironmentConfig.getDepotMinThreads(),
+                Math.min(systemEnvironmentConfig.getDepotMaxThreads(), target));
+        if (target == size) {
+            return;
+        }
+        // the max pool size can't be less than the core pool size.
+        if (target > size) {
+            e.setMaxPoolSize(target);
+            e.setCorePoolSize(target);
+        } else {
+            e.setCorePoolSize(target);
+            e.setMaxPoolSize(target);
+        }
+        log.info("Resize taskExecutor from {} to {} threads", size, target);
+    }
+}
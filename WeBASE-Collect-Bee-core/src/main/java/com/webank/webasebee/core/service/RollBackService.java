@@ -23,6 +23,7 @@ import org.springframework.stereotype.Service;
 import com.webank.webasebee.common.enums.TxInfoStatusEnum;
 import com.webank.webasebee.core.config.SystemEnvironmentConfig;
 import com.webank.webasebee.db.repository.RollbackInterface;
+import com.webank.webasebee.parser.service.ContractAddressCacheService;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -43,6 +44,8 @@ public class RollBackService {
     private Map<String, RollbackInterface> rollbackOneInterfaceMap;
     @Autowired
     private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
+    private ContractAddressCacheService contractAddressCacheService;
 
     /**
      * Do rollback, including events, methods, accounts, and details.
@@ -54,6 +57,7 @@ public class RollBackService {
         rollbackOneInterfaceMap.forEach((k, v) -> {
             v.rollback(blockHeight);
         });
+        contractAddressCacheService.evict(blockHeight);
     }
 
     /**
@@ -66,6 +70,7 @@ public class RollBackService {
         rollbackOneInterfaceMap.forEach((k, v) -> {
             v.rollback(start, end);
         });
+        contractAddressCacheService.evict(start, end);
     }
 
     /**
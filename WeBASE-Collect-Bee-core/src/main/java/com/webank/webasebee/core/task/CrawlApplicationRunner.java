@@ -32,7 +32,10 @@ import com.webank.webasebee.core.service.BlockAsyncService;
 import com.webank.webasebee.core.service.BlockCheckService;
 import com.webank.webasebee.core.service.BlockDepotService;
 import com.webank.webasebee.core.service.BlockIndexService;
+import com.webank.webasebee.core.service.BlockNotifyService;
+import com.webank.webasebee.core.service.BlockPipelineService;
 import com.webank.webasebee.core.service.BlockPrepareService;
+import com.webank.webasebee.core.service.CrawlBatchUnitService;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -63,6 +66,12 @@ public class CrawlApplicationRunner implements ApplicationRunner {
     private BlockIndexService blockIndexService;
     @Autowired
     private BlockPrepareService blockPrepareService;
+    @Autowired
+    private BlockPipelineService blockPipelineService;
+    @Autowired
+    private CrawlBatchUnitService crawlBatchUnitService;
+    @Autowired
+    private BlockNotifyService blockNotifyService;
 
     private long startBlockNumber;
     private boolean signal = true;
@@ -87,10 +96,11 @@ public class CrawlApplicationRunner implements ApplicationRunner {
         }
         while (signal) {
             try {
-                long currentChainHeight = blockPrepareService.getCurrentBlockHeight();
+                long currentChainHeight = blockNotifyService.getCurrentBlockHeight();
                 long fromHeight = getHeight(blockPrepareService.getTaskPoolHeight());
                 // control the batch unit number
-                long end = fromHeight + systemEnvironmentConfig.getCrawlBatchUnit() - 1;
+                int batchUnit = crawlBatchUnitService.next(fromHeight, currentChainHeight);
+                long end = fromHeight + batchUnit - 1;
                 long toHeight = currentChainHeight < end ? currentChainHeight : end;
                 log.info("Current depot status: {} of {}, and try to process block from {} to {}", fromHeight - 1,
                         currentChainHeight, fromHeight, toHeight);
@@ -100,14 +110,18 @@ public class CrawlApplicationRunner implements ApplicationRunner {
                     blockPrepareService.prepareTask(fromHeight, toHeight, certainty);
                 } else {
                     // single circle sleep time is read from the application.properties
-                    log.info("No sync block tasks to prepare, begin to sleep {} s",
+                    log.info("No sync block tasks to prepare, begin to wait at most {} s for new blocks",
                             systemEnvironmentConfig.getFrequency());
-                    Thread.sleep(systemEnvironmentConfig.getFrequency() * 1000);
+                    blockNotifyService.waitForNewBlock(currentChainHeight);
                 }
-                log.info("Begin to fetch at most {} tasks", systemEnvironmentConfig.getCrawlBatchUnit());
-                List<Block> taskList = blockSyncService.fetchData(systemEnvironmentConfig.getCrawlBatchUnit());
-                for (Block b : taskList) {
-                    blockAsyncService.handleSingleBlock(b, currentChainHeight);
+                log.info("Begin to fetch at most {} tasks", batchUnit);
+                if (systemEnvironmentConfig.isPipeline()) {
+                    blockPipelineService.process(batchUnit, currentChainHeight);
+                } else {
+                    List<Block> taskList = blockSyncService.fetchData(batchUnit);
+                    for (Block b : taskList) {
+                        blockAsyncService.handleSingleBlock(b, currentChainHeight);
+                    }
                 }
                 if (!certainty) {
                     blockTaskPoolService.checkForks(currentChainHeight);
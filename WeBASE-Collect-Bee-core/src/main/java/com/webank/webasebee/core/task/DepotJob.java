@@ -30,10 +30,11 @@ import org.springframework.util.CollectionUtils;
 
 import com.dangdang.ddframe.job.api.ShardingContext;
 import com.dangdang.ddframe.job.api.dataflow.DataflowJob;
-import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
 import com.webank.webasebee.core.service.BlockDepotService;
+import com.webank.webasebee.core.service.BlockTaskLeaseService;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
 import com.webank.webasebee.db.entity.BlockTaskPool;
-import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -52,23 +53,33 @@ import lombok.extern.slf4j.Slf4j;
 public class DepotJob implements DataflowJob<Block> {
 
     @Autowired
-    private BlockTaskPoolRepository blockTaskPoolRepository;
+    private BlockTaskTracker blockTaskTracker;
     @Autowired
     private BlockDepotService blockSyncService;
     @Autowired
+    private BlockTaskLeaseService blockTaskLeaseService;
+    @Autowired
+    private SystemEnvironmentConfig systemEnvironmentConfig;
+    @Autowired
     private Web3j web3j;
 
     /*
+     * Claim a batch of init tasks by an atomic update instead of picking one task by the sharding item, so the
+     * instances never fetch the same block and each fetch takes up to system.depotClaimSize blocks. In the range
+     * lease mode, the tasks are only claimed from the lease held by this instance.
+     * 
      * @see com.dangdang.ddframe.job.api.dataflow.DataflowJob#fetchData(com.dangdang.ddframe.job.api.ShardingContext)
      */
     @Override
     public List<Block> fetchData(ShardingContext shardingContext) {
-        List<BlockTaskPool> tasks =
-                blockTaskPoolRepository.findBySyncStatusModByBlockHeightLimit(shardingContext.getShardingTotalCount(),
-                        shardingContext.getShardingItem(), (short) TxInfoStatusEnum.INIT.getStatus(), 1);
+        List<BlockTaskPool> tasks = systemEnvironmentConfig.isRangeLease()
+                ? blockTaskLeaseService.claimTasks(systemEnvironmentConfig.getDepotClaimSize())
+                : blockTaskTracker.claimInitTasks(systemEnvironmentConfig.getDepotClaimSize());
         if (CollectionUtils.isEmpty(tasks)) {
             return new ArrayList<Block>();
         }
+        log.info("Job {} claims {} tasks from block {}", shardingContext.getTaskId(), tasks.size(),
+                tasks.get(0).getBlockHeight());
         return blockSyncService.getTasks(tasks);
     }
 
@@ -33,6 +33,7 @@ import com.webank.webasebee.common.constants.BlockConstants;
 import com.webank.webasebee.core.config.SystemEnvironmentConfig;
 import com.webank.webasebee.core.service.BlockIndexService;
 import com.webank.webasebee.core.service.BlockPrepareService;
+import com.webank.webasebee.core.service.BlockTaskLeaseService;
 import com.webank.webasebee.core.service.BlockCheckService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -59,6 +60,8 @@ public class PrepareTaskJob implements SimpleJob {
     @Autowired
     private BlockPrepareService blockPrepareService;
     @Autowired
+    private BlockTaskLeaseService blockTaskLeaseService;
+    @Autowired
     private SystemEnvironmentConfig systemEnvironmentConfig;
     private long startBlockNumber;
 
@@ -88,6 +91,9 @@ public class PrepareTaskJob implements SimpleJob {
             long batchNo = total < end ? total : end;
             boolean certainty = end < total - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER;
             blockPrepareService.prepareTask(height, batchNo, certainty);
+            if (systemEnvironmentConfig.isRangeLease()) {
+                blockTaskLeaseService.createLeases(startBlockNumber, batchNo);
+            }
             if (!certainty) {
                 blockCheckService.checkForks(total);
             }
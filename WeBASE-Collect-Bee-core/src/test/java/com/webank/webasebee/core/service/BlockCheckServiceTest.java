@@ -0,0 +1,163 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.webank.webasebee.common.enums.BlockCertaintyEnum;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.common.tools.BlockHeightBitmap;
+import com.webank.webasebee.core.WebaseBeeApplicationTests;
+import com.webank.webasebee.db.dao.BlockDetailInfoDAO;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.extractor.ods.EthClient;
+
+/**
+ * BlockCheckServiceTest checks the task count check against a mocked tracker, which counts and lists only the heights
+ * inside the queried range like the block_task_pool queries do, and the fork check against mocked hashes.
+ *
+ * @Description: BlockCheckServiceTest
+ *
+ */
+public class BlockCheckServiceTest extends WebaseBeeApplicationTests {
+    private static final long CHUNK = BlockHeightBitmap.CHUNK_SIZE;
+
+    private TreeSet<Long> stored;
+    private BlockTaskTracker tracker;
+    private BlockDetailInfoDAO blockDetailInfoDAO;
+    private EthClient ethClient;
+    private RollBackService rollBackService;
+    private BlockCheckService checkService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stored = new TreeSet<>();
+        tracker = mock(BlockTaskTracker.class);
+        when(tracker.countByBlockHeightRange(anyLong(), anyLong())).thenAnswer(invocation -> (long) stored
+                .subSet(invocation.getArgument(0), true, invocation.getArgument(1), true).size());
+        when(tracker.findBlockHeightsByBlockHeightRange(anyLong(), anyLong()))
+                .thenAnswer(invocation -> stored
+                        .subSet(invocation.getArgument(0), true, invocation.getArgument(1), true).stream()
+                        .collect(Collectors.toList()));
+        doAnswer(invocation -> {
+            ((List<BlockTaskPool>) invocation.getArgument(0)).forEach(p -> stored.add(p.getBlockHeight()));
+            return null;
+        }).when(tracker).saveAll(anyList());
+        blockDetailInfoDAO = mock(BlockDetailInfoDAO.class);
+        ethClient = mock(EthClient.class);
+        rollBackService = mock(RollBackService.class);
+        checkService = new BlockCheckService();
+        ReflectionTestUtils.setField(checkService, "blockTaskTracker", tracker);
+        ReflectionTestUtils.setField(checkService, "blockDetailInfoDAO", blockDetailInfoDAO);
+        ReflectionTestUtils.setField(checkService, "ethClient", ethClient);
+        ReflectionTestUtils.setField(checkService, "rollBackService", rollBackService);
+    }
+
+    private void store(long start, long end) {
+        for (long h = start; h <= end; h++) {
+            stored.add(h);
+        }
+    }
+
+    @Test
+    public void testCompleteRangeIsCheckedOnce() {
+        store(0, 3 * CHUNK);
+        checkService.checkTaskCount(0, 3 * CHUNK);
+        checkService.checkTaskCount(0, 3 * CHUNK);
+        checkService.checkTaskCount(CHUNK, 2 * CHUNK);
+        verify(tracker, times(1)).countByBlockHeightRange(anyLong(), anyLong());
+        verify(tracker, never()).findBlockHeightsByBlockHeightRange(anyLong(), anyLong());
+        verify(tracker, never()).saveAll(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSupplementMissingTasks() {
+        store(100, 3 * CHUNK + 10);
+        stored.remove(150L);
+        stored.remove(CHUNK);
+        stored.remove(CHUNK + 1);
+        stored.remove(3 * CHUNK + 10);
+        // as many tasks outside the range as missing inside, which a count over the whole table would not notice
+        store(96, 99);
+        checkService.checkTaskCount(100, 3 * CHUNK + 10);
+
+        ArgumentCaptor<List<BlockTaskPool>> captor = ArgumentCaptor.forClass(List.class);
+        verify(tracker).saveAll(captor.capture());
+        List<BlockTaskPool> supplements = captor.getValue();
+        assertEquals(Arrays.asList(150L, CHUNK, CHUNK + 1, 3 * CHUNK + 10),
+                supplements.stream().map(BlockTaskPool::getBlockHeight).collect(Collectors.toList()));
+        supplements.forEach(p -> assertEquals(TxInfoStatusEnum.ERROR.getStatus(), p.getSyncStatus()));
+        // the full chunk in the middle is never listed
+        verify(tracker, never()).findBlockHeightsByBlockHeightRange(2 * CHUNK, 3 * CHUNK - 1);
+
+        // all the tasks are there now, so the next check queries nothing
+        clearInvocations(tracker);
+        checkService.checkTaskCount(100, 3 * CHUNK + 10);
+        verify(tracker, never()).countByBlockHeightRange(anyLong(), anyLong());
+        verify(tracker, never()).findBlockHeightsByBlockHeightRange(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testForkWithoutStoredHash() throws IOException {
+        short done = (short) TxInfoStatusEnum.DONE.getStatus();
+        short uncertain = (short) BlockCertaintyEnum.UNCERTAIN.getCertainty();
+        when(tracker.findByCertainty(uncertain)).thenReturn(Arrays.asList(
+                new BlockTaskPool().setBlockHeight(20).setSyncStatus(done).setCertainty(uncertain),
+                new BlockTaskPool().setBlockHeight(21).setSyncStatus(done).setCertainty(uncertain),
+                new BlockTaskPool().setBlockHeight(22).setSyncStatus(done).setCertainty(uncertain)));
+        // block 21 has no stored hash, and the node does not return its hash either
+        Map<Long, String> storedHashes = new HashMap<>();
+        storedHashes.put(20L, "0x20");
+        storedHashes.put(22L, "0x22");
+        when(blockDetailInfoDAO.getBlockHashes(20, 22)).thenReturn(storedHashes);
+        when(ethClient.getBlockHashes(anyList())).thenReturn(Arrays.asList("0x20", null, "0x22"));
+        checkService.checkForks(100);
+
+        verify(rollBackService).rollback(21, 22);
+        verify(rollBackService, times(1)).rollback(anyLong(), anyLong());
+        verify(tracker).setSyncStatusByBlockHeightRange(eq((short) TxInfoStatusEnum.INIT.getStatus()), any(),
+                eq(21L), eq(21L));
+        verify(tracker).setCertaintyByBlockHeights((short) BlockCertaintyEnum.FIXED.getCertainty(),
+                Arrays.asList(20L, 22L, 21L));
+    }
+}
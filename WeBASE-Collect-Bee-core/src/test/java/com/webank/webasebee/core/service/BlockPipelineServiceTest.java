@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyShort;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
+import org.fisco.bcos.web3j.utils.Numeric;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.webank.webasebee.common.bo.data.BlockInfoBO;
+import com.webank.webasebee.core.WebaseBeeApplicationTests;
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.extractor.ods.EthClient;
+
+/**
+ * BlockPipelineServiceTest checks that a batch always returns, when the database is down or a stage thread dies.
+ *
+ * @Description: BlockPipelineServiceTest
+ *
+ */
+public class BlockPipelineServiceTest extends WebaseBeeApplicationTests {
+    private static final int COUNT = 200;
+
+    private BlockTaskTracker tracker;
+    private BlockDepotService depotService;
+    private BlockCrawlService crawlService;
+    private BlockPipelineService pipelineService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        SystemEnvironmentConfig config = new SystemEnvironmentConfig();
+        config.setPipelineFetchThreads(2);
+        config.setPipelineParseThreads(2);
+        config.setPipelineStoreThreads(2);
+        config.setPipelineQueueSize(2);
+        config.setBlocksPerCommit(3);
+        tracker = mock(BlockTaskTracker.class);
+        List<BlockTaskPool> tasks = LongStream.range(0, COUNT).mapToObj(h -> new BlockTaskPool().setBlockHeight(h))
+                .collect(Collectors.toList());
+        when(tracker.findBySyncStatusOrderByBlockHeightLimit(anyShort(), anyInt())).thenReturn(tasks);
+        EthClient ethClient = mock(EthClient.class);
+        when(ethClient.getBlock(any())).thenAnswer(invocation -> {
+            Block block = new Block();
+            block.setNumber(Numeric.encodeQuantity(invocation.getArgument(0)));
+            return block;
+        });
+        depotService = mock(BlockDepotService.class);
+        crawlService = mock(BlockCrawlService.class);
+        when(crawlService.parse(any(Block.class))).thenReturn(new BlockInfoBO());
+
+        pipelineService = new BlockPipelineService();
+        ReflectionTestUtils.setField(pipelineService, "systemEnvironmentConfig", config);
+        ReflectionTestUtils.setField(pipelineService, "blockTaskTracker", tracker);
+        ReflectionTestUtils.setField(pipelineService, "blockDepotService", depotService);
+        ReflectionTestUtils.setField(pipelineService, "blockCrawlService", crawlService);
+        ReflectionTestUtils.setField(pipelineService, "ethClient", ethClient);
+        pipelineService.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pipelineService.destroy();
+    }
+
+    @Test
+    public void testDatabaseDown() {
+        doThrow(new IllegalStateException("database is down")).when(depotService).store(anyList(), anyList(),
+                anyLong());
+        doThrow(new IllegalStateException("database is down")).when(depotService).setError(anyList());
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pipelineService.process(COUNT, COUNT));
+        verify(depotService, atLeastOnce()).setError(anyList());
+    }
+
+    @Test
+    public void testStageThreadDies() throws IOException {
+        when(crawlService.parse(any(Block.class))).thenThrow(new StackOverflowError("stage dies"));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pipelineService.process(COUNT, COUNT));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyShort;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.webank.webasebee.common.enums.BlockCertaintyEnum;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.core.WebaseBeeApplicationTests;
+import com.webank.webasebee.core.config.SystemEnvironmentConfig;
+import com.webank.webasebee.db.dao.BlockDetailInfoDAO;
+import com.webank.webasebee.db.dao.BlockTaskTracker;
+import com.webank.webasebee.db.entity.BlockTaskLease;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.db.repository.BlockTaskLeaseRepository;
+import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
+import com.webank.webasebee.extractor.ods.EthClient;
+
+/**
+ * BlockTaskLeaseServiceTest
+ *
+ * @Description: BlockTaskLeaseServiceTest
+ *
+ */
+public class BlockTaskLeaseServiceTest extends WebaseBeeApplicationTests {
+    private static final short DONE = (short) TxInfoStatusEnum.DONE.getStatus();
+
+    private BlockTaskLeaseRepository leaseRepository;
+    private BlockTaskPoolRepository poolRepository;
+    private BlockTaskTracker tracker;
+    private BlockDetailInfoDAO blockDetailInfoDAO;
+    private EthClient ethClient;
+    private RollBackService rollBackService;
+    private BlockTaskLeaseService leaseService;
+    private BlockCheckService checkService;
+    private String owner;
+
+    @BeforeEach
+    public void setUp() {
+        leaseRepository = mock(BlockTaskLeaseRepository.class);
+        poolRepository = mock(BlockTaskPoolRepository.class);
+        tracker = mock(BlockTaskTracker.class);
+        blockDetailInfoDAO = mock(BlockDetailInfoDAO.class);
+        ethClient = mock(EthClient.class);
+        rollBackService = mock(RollBackService.class);
+        SystemEnvironmentConfig config = new SystemEnvironmentConfig();
+        config.setRangeLease(true);
+
+        leaseService = new BlockTaskLeaseService();
+        ReflectionTestUtils.setField(leaseService, "blockTaskLeaseRepository", leaseRepository);
+        ReflectionTestUtils.setField(leaseService, "blockTaskPoolRepository", poolRepository);
+        ReflectionTestUtils.setField(leaseService, "systemEnvironmentConfig", config);
+        owner = (String) ReflectionTestUtils.getField(leaseService, "owner");
+
+        checkService = new BlockCheckService();
+        ReflectionTestUtils.setField(checkService, "blockTaskTracker", tracker);
+        ReflectionTestUtils.setField(checkService, "blockDetailInfoDAO", blockDetailInfoDAO);
+        ReflectionTestUtils.setField(checkService, "ethClient", ethClient);
+        ReflectionTestUtils.setField(checkService, "rollBackService", rollBackService);
+        ReflectionTestUtils.setField(checkService, "blockTaskLeaseService", leaseService);
+    }
+
+    private BlockTaskLease lease(long pkId, long start, long end) {
+        BlockTaskLease lease = new BlockTaskLease().setStartHeight(start).setEndHeight(end).setOwner(owner);
+        lease.setPkId(pkId);
+        return lease;
+    }
+
+    private BlockTaskPool task(long height, TxInfoStatusEnum status) {
+        return new BlockTaskPool().setBlockHeight(height).setSyncStatus((short) status.getStatus())
+                .setCertainty((short) BlockCertaintyEnum.UNCERTAIN.getCertainty());
+    }
+
+    @Test
+    public void testForkAfterLeaseFinished() throws IOException {
+        BlockTaskLease lease = lease(1, 0, 9);
+        // all the blocks of the lease are done, but still uncertain
+        when(leaseRepository.findByOwnerAndFinishedOrderByStartHeight(owner, false))
+                .thenReturn(Collections.singletonList(lease)).thenReturn(Collections.emptyList());
+        when(leaseRepository.renew(anyLong(), anyString(), any())).thenReturn(1);
+        when(poolRepository.claimBySyncStatusAndBlockHeightRange(anyShort(), anyShort(), anyString(), any(),
+                anyLong(), anyLong(), anyInt())).thenReturn(0);
+        when(leaseRepository.finish(1, owner, DONE)).thenReturn(1);
+        assertTrue(leaseService.claimTasks(10).isEmpty());
+        verify(leaseRepository).finish(1, owner, DONE);
+
+        // the fork check finds blocks 8 and 9 forked
+        when(tracker.findByCertainty((short) BlockCertaintyEnum.UNCERTAIN.getCertainty()))
+                .thenReturn(Arrays.asList(task(8, TxInfoStatusEnum.DONE), task(9, TxInfoStatusEnum.DONE)));
+        Map<Long, String> storedHashes = new HashMap<>();
+        storedHashes.put(8L, "0x08");
+        storedHashes.put(9L, "0x09");
+        when(blockDetailInfoDAO.getBlockHashes(8, 9)).thenReturn(storedHashes);
+        when(ethClient.getBlockHashes(anyList())).thenReturn(Arrays.asList("0x18", "0x19"));
+        when(leaseRepository.reopen(8, 9)).thenReturn(1);
+        checkService.checkForks(100);
+        verify(rollBackService).rollback(8, 10);
+        verify(tracker).setSyncStatusByBlockHeightRange(eq((short) TxInfoStatusEnum.INIT.getStatus()), any(),
+                eq(8L), eq(9L));
+        verify(leaseRepository).reopen(8, 9);
+
+        // the reopened lease is acquired again, and its reset blocks are claimed
+        when(leaseRepository.findByOwnerAndFinishedOrderByStartHeight(owner, false))
+                .thenReturn(Collections.emptyList()).thenReturn(Collections.singletonList(lease));
+        when(leaseRepository.acquire(eq(owner), any(), any())).thenReturn(1);
+        when(poolRepository.claimBySyncStatusAndBlockHeightRange(anyShort(), anyShort(), anyString(), any(),
+                eq(0L), eq(9L), anyInt())).thenReturn(2);
+        when(poolRepository.findByDepotOwnerOrderByBlockHeight(anyString()))
+                .thenReturn(Arrays.asList(task(8, TxInfoStatusEnum.DOING), task(9, TxInfoStatusEnum.DOING)));
+        List<BlockTaskPool> tasks = leaseService.claimTasks(10);
+        assertEquals(2, tasks.size());
+        assertEquals(8, tasks.get(0).getBlockHeight());
+    }
+
+    @Test
+    public void testLeaseNotFinishedWithPendingBlocks() {
+        BlockTaskLease lease = lease(1, 0, 9);
+        when(leaseRepository.findByOwnerAndFinishedOrderByStartHeight(owner, false))
+                .thenReturn(Collections.singletonList(lease));
+        when(leaseRepository.renew(anyLong(), anyString(), any())).thenReturn(1);
+        when(poolRepository.claimBySyncStatusAndBlockHeightRange(anyShort(), anyShort(), anyString(), any(),
+                anyLong(), anyLong(), anyInt())).thenReturn(0);
+        // a block of the lease is reset to init after the claim, so the finish statement matches nothing
+        when(leaseRepository.finish(1, owner, DONE)).thenReturn(0);
+        assertTrue(leaseService.claimTasks(10).isEmpty());
+        verify(leaseRepository, never()).acquire(anyString(), any(), any());
+
+        // the lease is still held, and the reset block is claimed on the next round
+        when(poolRepository.claimBySyncStatusAndBlockHeightRange(anyShort(), anyShort(), anyString(), any(), eq(0L),
+                eq(9L), anyInt())).thenReturn(1);
+        when(poolRepository.findByDepotOwnerOrderByBlockHeight(anyString()))
+                .thenReturn(Collections.singletonList(task(5, TxInfoStatusEnum.DOING)));
+        assertEquals(1, leaseService.claimTasks(10).size());
+    }
+
+    @Test
+    public void testReopenLeasesOnlyInRangeLeaseMode() {
+        ReflectionTestUtils.setField(leaseService, "systemEnvironmentConfig", new SystemEnvironmentConfig());
+        leaseService.reopenLeases(0, 9);
+        verify(leaseRepository, never()).reopen(anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.service;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Collections;
+
+import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
+import org.fisco.bcos.web3j.utils.Numeric;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.webank.webasebee.core.WebaseBeeApplicationTests;
+import com.webank.webasebee.extractor.ods.EthClient;
+import com.webank.webasebee.parser.service.ContractAddressCacheService;
+import com.webank.webasebee.parser.service.ContractConstructorService;
+import com.webank.webasebee.parser.service.TransactionService;
+
+/**
+ * TransactionServiceTest checks that the code of an unregistered contract is fetched only once.
+ *
+ * @Description: TransactionServiceTest
+ *
+ */
+public class TransactionServiceTest extends WebaseBeeApplicationTests {
+    private static final String DEPLOYED = "0x1111111111111111111111111111111111111111";
+    private static final String NOT_DEPLOYED = "0x2222222222222222222222222222222222222222";
+
+    private EthClient ethClient;
+    private ContractAddressCacheService cacheService;
+    private TransactionService transactionService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        ethClient = mock(EthClient.class);
+        when(ethClient.getCodeByContractAddress(DEPLOYED)).thenReturn("0x6080604052");
+        when(ethClient.getCodeByContractAddress(NOT_DEPLOYED)).thenReturn("0x");
+        ContractConstructorService constructorService = mock(ContractConstructorService.class);
+        when(constructorService.getConstructorNameByCode(anyString())).thenReturn(null);
+        cacheService = new ContractAddressCacheService();
+
+        transactionService = new TransactionService();
+        ReflectionTestUtils.setField(transactionService, "ethClient", ethClient);
+        ReflectionTestUtils.setField(transactionService, "contractConstructorService", constructorService);
+        ReflectionTestUtils.setField(transactionService, "contractAddressCacheService", cacheService);
+    }
+
+    private static Transaction transaction(String to) {
+        Transaction transaction = new Transaction();
+        transaction.setTo(to);
+        transaction.setHash("0x01");
+        transaction.setBlockNumber(Numeric.encodeQuantity(BigInteger.TEN));
+        return transaction;
+    }
+
+    @Test
+    public void testUnregisteredContract() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            assertFalse(transactionService
+                    .getContractNameByTransaction(transaction(DEPLOYED), Collections.emptyMap()).isPresent());
+        }
+        verify(ethClient, times(1)).getCodeByContractAddress(DEPLOYED);
+        assertTrue(cacheService.isUnregistered(DEPLOYED.toUpperCase()));
+
+        // kept on rollback, the deployed code never changes
+        cacheService.evict(0);
+        assertTrue(cacheService.isUnregistered(DEPLOYED));
+    }
+
+    @Test
+    public void testAddressWithoutCode() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            assertFalse(transactionService
+                    .getContractNameByTransaction(transaction(NOT_DEPLOYED), Collections.emptyMap()).isPresent());
+        }
+        verify(ethClient, times(2)).getCodeByContractAddress(NOT_DEPLOYED);
+        assertFalse(cacheService.isUnregistered(NOT_DEPLOYED));
+    }
+}
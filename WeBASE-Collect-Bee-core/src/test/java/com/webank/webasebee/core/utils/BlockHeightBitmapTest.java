@@ -0,0 +1,153 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.webank.webasebee.common.tools.BlockHeightBitmap;
+import com.webank.webasebee.core.WebaseBeeApplicationTests;
+
+/**
+ * BlockHeightBitmapTest
+ *
+ * @Description: BlockHeightBitmapTest
+ *
+ */
+public class BlockHeightBitmapTest extends WebaseBeeApplicationTests {
+    private static final long CHUNK = BlockHeightBitmap.CHUNK_SIZE;
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, BitSet> chunks(BlockHeightBitmap bitmap) {
+        return (Map<Long, BitSet>) ReflectionTestUtils.getField(bitmap, "chunks");
+    }
+
+    private static BitSet fullMarker() {
+        return (BitSet) ReflectionTestUtils.getField(BlockHeightBitmap.class, "FULL");
+    }
+
+    private static List<Long> heights(long start, long end) {
+        return LongStream.rangeClosed(start, end).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testChunkStart() {
+        assertEquals(0, BlockHeightBitmap.chunkStart(0));
+        assertEquals(0, BlockHeightBitmap.chunkStart(CHUNK - 1));
+        assertEquals(CHUNK, BlockHeightBitmap.chunkStart(CHUNK));
+        assertEquals(3 * CHUNK, BlockHeightBitmap.chunkStart(3 * CHUNK + 12345));
+    }
+
+    @Test
+    public void testRangeAcrossChunks() {
+        BlockHeightBitmap bitmap = new BlockHeightBitmap();
+        long start = CHUNK - 10;
+        long end = 3 * CHUNK + 9;
+        bitmap.add(start, end);
+
+        assertEquals(4, chunks(bitmap).size());
+        assertTrue(bitmap.containsAll(start, end));
+        assertTrue(bitmap.contains(start));
+        assertTrue(bitmap.contains(2 * CHUNK));
+        assertTrue(bitmap.contains(end));
+        assertFalse(bitmap.contains(start - 1));
+        assertFalse(bitmap.contains(end + 1));
+        assertFalse(bitmap.containsAll(start - 1, end));
+        assertFalse(bitmap.containsAll(start, end + 1));
+        // only the chunks in the middle are full
+        assertSame(fullMarker(), chunks(bitmap).get(CHUNK));
+        assertSame(fullMarker(), chunks(bitmap).get(2 * CHUNK));
+        assertEquals(Arrays.asList(start - 2, start - 1, end + 1), bitmap.missing(start - 2, end + 1));
+        assertEquals(Collections.emptyList(), bitmap.missing(start, end));
+    }
+
+    @Test
+    public void testChunkBecomesFull() {
+        BlockHeightBitmap bitmap = new BlockHeightBitmap();
+        bitmap.add(CHUNK, 2 * CHUNK - 2);
+        assertTrue(chunks(bitmap).get(CHUNK) != fullMarker());
+        assertEquals(Collections.singletonList(2 * CHUNK - 1), bitmap.missing(CHUNK, 2 * CHUNK - 1));
+
+        bitmap.add(2 * CHUNK - 1);
+        assertSame(fullMarker(), chunks(bitmap).get(CHUNK));
+        assertTrue(bitmap.containsAll(CHUNK, 2 * CHUNK - 1));
+        assertTrue(bitmap.contains(CHUNK + 100));
+
+        // adding to a full chunk keeps it full, and the other chunks stay empty
+        bitmap.add(CHUNK + 5, 2 * CHUNK + 1);
+        assertSame(fullMarker(), chunks(bitmap).get(CHUNK));
+        assertEquals(heights(2 * CHUNK + 2, 2 * CHUNK + 4), bitmap.missing(CHUNK, 2 * CHUNK + 4));
+        assertEquals(heights(CHUNK - 3, CHUNK - 1), bitmap.missing(CHUNK - 3, CHUNK + 1));
+        assertFalse(bitmap.contains(CHUNK - 1));
+    }
+
+    @Test
+    public void testMissingInPartialChunks() {
+        BlockHeightBitmap bitmap = new BlockHeightBitmap();
+        bitmap.add(3);
+        bitmap.add(5, 7);
+        bitmap.add(CHUNK + 1);
+        assertEquals(Arrays.asList(0L, 1L, 2L, 4L, 8L, 9L), bitmap.missing(0, 9));
+        assertEquals(Arrays.asList(4L), bitmap.missing(4, 6));
+        assertEquals(Arrays.asList(CHUNK - 1, CHUNK, CHUNK + 2), bitmap.missing(CHUNK - 1, CHUNK + 2));
+        // a chunk which is never added is missing entirely
+        assertEquals(heights(5 * CHUNK - 2, 5 * CHUNK + 1), bitmap.missing(5 * CHUNK - 2, 5 * CHUNK + 1));
+        assertFalse(bitmap.containsAll(0, 9));
+        assertTrue(bitmap.containsAll(5, 7));
+    }
+
+    @Test
+    public void testRandomAgainstBitSet() {
+        Random random = new Random(7);
+        long limit = 4 * CHUNK;
+        for (int round = 0; round < 20; round++) {
+            BlockHeightBitmap bitmap = new BlockHeightBitmap();
+            BitSet expected = new BitSet();
+            for (int op = 0; op < 50; op++) {
+                long start = random.nextInt((int) limit);
+                long end = Math.min(limit - 1, start + random.nextInt(random.nextBoolean() ? 100 : (int) CHUNK * 2));
+                bitmap.add(start, end);
+                expected.set((int) start, (int) end + 1);
+
+                long from = random.nextInt((int) limit);
+                long to = Math.min(limit - 1, from + random.nextInt((int) CHUNK));
+                List<Long> missing = heights(from, to).stream().filter(h -> !expected.get(h.intValue()))
+                        .collect(Collectors.toList());
+                assertEquals(missing, bitmap.missing(from, to));
+                assertEquals(missing.isEmpty(), bitmap.containsAll(from, to));
+                assertEquals(expected.get((int) from), bitmap.contains(from));
+            }
+            for (long base = 0; base < limit; base += CHUNK) {
+                boolean full = expected.nextClearBit((int) base) >= base + CHUNK;
+                assertEquals(full, chunks(bitmap).get(base) == fullMarker(), "chunk " + base);
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.webank.webasebee.common.constants.BlockConstants;
+import com.webank.webasebee.common.enums.BlockCertaintyEnum;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.core.WebaseBeeApplicationTests;
+import com.webank.webasebee.db.dao.BlockTaskWatermarkTracker;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.db.entity.BlockTaskRange;
+import com.webank.webasebee.db.repository.BlockTaskRangeRepository;
+
+/**
+ * BlockTaskWatermarkTrackerTest checks the range bookkeeping of the watermark tracker against a per-block map, the
+ * block_task_range table is kept in memory by a mocked repository.
+ *
+ * @Description: BlockTaskWatermarkTrackerTest
+ *
+ */
+public class BlockTaskWatermarkTrackerTest extends WebaseBeeApplicationTests {
+    private static final short INIT = (short) TxInfoStatusEnum.INIT.getStatus();
+    private static final short DOING = (short) TxInfoStatusEnum.DOING.getStatus();
+    private static final short DONE = (short) TxInfoStatusEnum.DONE.getStatus();
+    private static final short ERROR = (short) TxInfoStatusEnum.ERROR.getStatus();
+    private static final short FIXED = (short) BlockCertaintyEnum.FIXED.getCertainty();
+    private static final short UNCERTAIN = (short) BlockCertaintyEnum.UNCERTAIN.getCertainty();
+
+    /** key:pk id, value:copy of the saved range. */
+    private Map<Long, BlockTaskRange> table;
+    /** the table when the current transaction begins, restored on rollback. */
+    private Map<Long, BlockTaskRange> snapshot;
+    private long nextPkId;
+    private boolean failWrite;
+    private BlockTaskRangeRepository repository;
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        table = new HashMap<>();
+        nextPkId = 1;
+        failWrite = false;
+        repository = mock(BlockTaskRangeRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            snapshot = new HashMap<>(table);
+            return null;
+        });
+        doAnswer(invocation -> {
+            table = snapshot;
+            return null;
+        }).when(transactionManager).rollback(any());
+        when(repository.findAllByOrderByStartHeight()).thenAnswer(invocation -> table.values().stream()
+                .sorted((a, b) -> Long.compare(a.getStartHeight(), b.getStartHeight())).map(this::copy)
+                .collect(Collectors.toList()));
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            if (failWrite) {
+                throw new IllegalStateException("write failed");
+            }
+            for (BlockTaskRange range : (Iterable<BlockTaskRange>) invocation.getArgument(0)) {
+                if (range.getPkId() == null) {
+                    range.setPkId(nextPkId++);
+                }
+                table.put(range.getPkId(), copy(range));
+            }
+            return null;
+        });
+        doAnswer(invocation -> {
+            for (BlockTaskRange range : (Iterable<BlockTaskRange>) invocation.getArgument(0)) {
+                table.remove(range.getPkId());
+            }
+            return null;
+        }).when(repository).deleteAll(any());
+    }
+
+    private BlockTaskRange copy(BlockTaskRange range) {
+        BlockTaskRange copy = new BlockTaskRange().setStartHeight(range.getStartHeight())
+                .setEndHeight(range.getEndHeight()).setSyncStatus(range.getSyncStatus())
+                .setCertainty(range.getCertainty()).setDepotUpdatetime(range.getDepotUpdatetime());
+        copy.setPkId(range.getPkId());
+        return copy;
+    }
+
+    private BlockTaskWatermarkTracker newTracker() {
+        BlockTaskWatermarkTracker tracker = new BlockTaskWatermarkTracker();
+        ReflectionTestUtils.setField(tracker, "blockTaskRangeRepository", repository);
+        ReflectionTestUtils.setField(tracker, "transactionManager", transactionManager);
+        tracker.init();
+        return tracker;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TreeMap<Long, BlockTaskRange> ranges(BlockTaskWatermarkTracker tracker) {
+        return (TreeMap<Long, BlockTaskRange>) ReflectionTestUtils.getField(tracker, "ranges");
+    }
+
+    private static List<Long> heights(long start, long end) {
+        return LongStream.rangeClosed(start, end).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Long> heights(List<BlockTaskPool> pools) {
+        return pools.stream().map(BlockTaskPool::getBlockHeight).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPrepareAndWatermark() {
+        BlockTaskWatermarkTracker tracker = newTracker();
+        assertEquals(0, tracker.getWatermark());
+        tracker.prepareTask(0, 99, false);
+        assertEquals(100, tracker.getTaskPoolHeight());
+        assertEquals(2, ranges(tracker).size());
+        assertEquals(FIXED, tracker.findByBlockHeight(99 - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER).get()
+                .getCertainty());
+        assertEquals(UNCERTAIN, tracker.findByBlockHeight(100 - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER)
+                .get().getCertainty());
+        assertFalse(tracker.findByBlockHeight(100).isPresent());
+
+        tracker.setSyncStatusByBlockHeights(DONE, new Date(), heights(0, 49));
+        assertEquals(50, tracker.getWatermark());
+        tracker.setSyncStatusByBlockHeight(ERROR, new Date(), 60);
+        tracker.setSyncStatusByBlockHeightRange(DONE, new Date(), 50, 59);
+        assertEquals(60, tracker.getWatermark());
+        assertEquals(Arrays.asList(60L), heights(tracker.findUnNormalRecords()));
+        tracker.setSyncStatusByBlockHeightRange(DONE, new Date(), 60, 99);
+        assertEquals(100 - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER, tracker.getWatermark());
+        tracker.setCertaintyByBlockHeights(FIXED, heights(90, 99));
+        assertEquals(100, tracker.getWatermark());
+        assertEquals(1, ranges(tracker).size());
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testDoingRangesOfDifferentTimeKeptApart() {
+        BlockTaskWatermarkTracker tracker = newTracker();
+        tracker.prepareTask(0, 19, true);
+        Date early = new Date(1000);
+        Date late = new Date(5000);
+        tracker.setSyncStatusByBlockHeights(DOING, early, heights(0, 9));
+        tracker.setSyncStatusByBlockHeights(DOING, late, heights(10, 19));
+        assertEquals(2, ranges(tracker).size());
+        assertEquals(heights(0, 9), heights(tracker.findBySyncStatusAndDepotUpdatetimeLessThan(DOING, new Date(3000))));
+        assertEquals(20, tracker.countBySyncStatus(DOING));
+
+        tracker.setSyncStatusByBlockHeights(DOING, late, heights(0, 9));
+        assertEquals(1, ranges(tracker).size());
+        assertTrue(tracker.findBySyncStatusAndDepotUpdatetimeLessThan(DOING, new Date(3000)).isEmpty());
+    }
+
+    @Test
+    public void testStatusAndCertaintyUpdates() {
+        BlockTaskWatermarkTracker tracker = newTracker();
+        tracker.prepareTask(0, 29, false);
+        tracker.setSyncStatusAndCertaintyByBlockHeight(ERROR, FIXED, 27);
+        assertEquals(ERROR, tracker.findByBlockHeight(27).get().getSyncStatus());
+        assertEquals(FIXED, tracker.findByBlockHeight(27).get().getCertainty());
+        tracker.setCertaintyByBlockHeight(FIXED, 28);
+        assertEquals(Arrays.asList(24L, 25L, 26L, 29L), heights(tracker.findByCertainty(UNCERTAIN)));
+        // heights not tracked are never created by an update
+        tracker.setSyncStatusByBlockHeights(DONE, new Date(), Arrays.asList(28L, 29L, 30L, 31L));
+        tracker.setSyncStatusAndCertaintyByBlockHeight(INIT, FIXED, 40);
+        assertEquals(30, tracker.getTaskPoolHeight());
+        assertEquals(30, tracker.countByBlockHeightRange(0, 100));
+        assertEquals(0, tracker.countByBlockHeightRange(30, 100));
+        assertEquals(0, tracker.countByBlockHeightRange(10, 5));
+        assertEquals(heights(0, 4), heights(tracker.findBySyncStatusOrderByBlockHeightLimit(INIT, 5)));
+        // saveAll creates the missing heights
+        tracker.saveAll(Arrays.asList(new BlockTaskPool().setBlockHeight(31).setSyncStatus(ERROR)
+                .setCertainty(UNCERTAIN)));
+        assertEquals(32, tracker.getTaskPoolHeight());
+        assertFalse(tracker.findByBlockHeight(30).isPresent());
+        assertEquals(Arrays.asList(27L, 31L), heights(tracker.findUnNormalRecords()));
+    }
+
+    @Test
+    public void testReloadOnFailedWrite() {
+        BlockTaskWatermarkTracker tracker = newTracker();
+        tracker.prepareTask(0, 9, true);
+        tracker.setSyncStatusByBlockHeights(DONE, new Date(), heights(0, 4));
+        failWrite = true;
+        assertThrows(IllegalStateException.class,
+                () -> tracker.setSyncStatusByBlockHeights(DONE, new Date(), heights(5, 9)));
+        // the in memory ranges are reloaded from the table, the failed change is dropped
+        assertEquals(INIT, tracker.findByBlockHeight(5).get().getSyncStatus());
+        assertEquals(5, tracker.getWatermark());
+        failWrite = false;
+        tracker.setSyncStatusByBlockHeights(DONE, new Date(), heights(5, 9));
+        assertEquals(10, tracker.getWatermark());
+        assertEquals(10, newTracker().getWatermark());
+    }
+
+    @Test
+    public void testRandomAgainstPerBlockMap() {
+        Random random = new Random(1);
+        for (int iter = 0; iter < 50; iter++) {
+            setUp();
+            BlockTaskWatermarkTracker tracker = newTracker();
+            /** key:height, value:{status, certainty} */
+            Map<Long, short[]> expected = new HashMap<>();
+            long top = 0;
+            for (int op = 0; op < 200; op++) {
+                int bound = (int) top + 5;
+                switch (random.nextInt(7)) {
+                    case 0: {
+                        long end = top + random.nextInt(20);
+                        boolean certainty = random.nextBoolean();
+                        tracker.prepareTask(top, end, certainty);
+                        for (long h = top; h <= end; h++) {
+                            boolean fixed = certainty || h <= end - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER;
+                            expected.put(h, new short[] { INIT, fixed ? FIXED : UNCERTAIN });
+                        }
+                        top = end + 1;
+                        break;
+                    }
+                    case 1: {
+                        short status = (short) random.nextInt(6);
+                        List<Long> list = new ArrayList<>();
+                        for (int i = random.nextInt(10); i > 0; i--) {
+                            list.add((long) random.nextInt(bound));
+                        }
+                        tracker.setSyncStatusByBlockHeights(status, new Date(random.nextInt(3)), list);
+                        list.stream().filter(expected::containsKey).forEach(h -> expected.get(h)[0] = status);
+                        break;
+                    }
+                    case 2: {
+                        short certainty = (short) random.nextInt(2);
+                        long h = random.nextInt(bound);
+                        tracker.setCertaintyByBlockHeight(certainty, h);
+                        if (expected.containsKey(h)) {
+                            expected.get(h)[1] = certainty;
+                        }
+                        break;
+                    }
+                    case 3: {
+                        short status = (short) random.nextInt(6);
+                        short certainty = (short) random.nextInt(2);
+                        long start = random.nextInt((int) top + 10);
+                        List<BlockTaskPool> pools = new ArrayList<>();
+                        long end = start + random.nextInt(5);
+                        for (long h = start; h < end; h++) {
+                            if (random.nextBoolean()) {
+                                pools.add(new BlockTaskPool().setBlockHeight(h).setSyncStatus(status)
+                                        .setCertainty(certainty));
+                            }
+                        }
+                        tracker.saveAll(pools);
+                        for (BlockTaskPool p : pools) {
+                            expected.put(p.getBlockHeight(), new short[] { status, certainty });
+                            top = Math.max(top, p.getBlockHeight() + 1);
+                        }
+                        break;
+                    }
+                    case 4: {
+                        short status = (short) random.nextInt(6);
+                        long start = random.nextInt(bound);
+                        long end = start + random.nextInt(10);
+                        tracker.setSyncStatusByBlockHeightRange(status, new Date(random.nextInt(3)), start, end);
+                        for (long h = start; h <= end; h++) {
+                            if (expected.containsKey(h)) {
+                                expected.get(h)[0] = status;
+                            }
+                        }
+                        break;
+                    }
+                    case 5: {
+                        long h = random.nextInt(bound);
+                        tracker.setSyncStatusAndCertaintyByBlockHeight(INIT, FIXED, h);
+                        if (expected.containsKey(h)) {
+                            expected.put(h, new short[] { INIT, FIXED });
+                        }
+                        break;
+                    }
+                    default: {
+                        List<Long> list = new ArrayList<>();
+                        for (int i = random.nextInt(10); i > 0; i--) {
+                            list.add((long) random.nextInt(bound));
+                        }
+                        tracker.setCertaintyByBlockHeights(FIXED, list);
+                        list.stream().filter(expected::containsKey).forEach(h -> expected.get(h)[1] = FIXED);
+                        break;
+                    }
+                }
+                check(tracker, expected, top);
+            }
+            // the table written through holds the same ranges
+            check(newTracker(), expected, top);
+        }
+    }
+
+    private void check(BlockTaskWatermarkTracker tracker, Map<Long, short[]> expected, long top) {
+        assertEquals(top, tracker.getTaskPoolHeight());
+        for (long h = 0; h < top + 3; h++) {
+            Optional<BlockTaskPool> pool = tracker.findByBlockHeight(h);
+            short[] e = expected.get(h);
+            assertEquals(e != null, pool.isPresent(), "height " + h);
+            if (e != null) {
+                assertEquals(e[0], pool.get().getSyncStatus(), "status of height " + h);
+                assertEquals(e[1], pool.get().getCertainty(), "certainty of height " + h);
+            }
+        }
+        List<Long> inRange = expected.keySet().stream().filter(h -> h >= 3 && h <= top - 2).sorted()
+                .collect(Collectors.toList());
+        assertEquals(inRange.size(), tracker.countByBlockHeightRange(3, top - 2));
+        assertEquals(inRange, heights(tracker.findByBlockHeightRange(3, top - 2)));
+        assertEquals(inRange, tracker.findBlockHeightsByBlockHeightRange(3, top - 2));
+        for (short status = 0; status < 6; status++) {
+            final short s = status;
+            List<Long> withStatus = expected.entrySet().stream().filter(e -> e.getValue()[0] == s)
+                    .map(Map.Entry::getKey).sorted().collect(Collectors.toList());
+            assertEquals(withStatus.size(), tracker.countBySyncStatus(status));
+            assertEquals(withStatus.subList(0, Math.min(5, withStatus.size())),
+                    heights(tracker.findBySyncStatusOrderByBlockHeightLimit(status, 5)));
+        }
+        long watermark = expected.keySet().stream().mapToLong(h -> h).min().orElse(0);
+        while (expected.containsKey(watermark) && expected.get(watermark)[0] == DONE
+                && expected.get(watermark)[1] == FIXED) {
+            watermark++;
+        }
+        assertEquals(watermark, tracker.getWatermark());
+        BlockTaskRange prev = null;
+        for (BlockTaskRange range : ranges(tracker).values()) {
+            assertTrue(range.getStartHeight() <= range.getEndHeight());
+            if (prev != null) {
+                assertTrue(prev.getEndHeight() < range.getStartHeight());
+                boolean mergeable = prev.getEndHeight() + 1 == range.getStartHeight()
+                        && prev.getSyncStatus() == range.getSyncStatus() && prev.getCertainty() == range.getCertainty()
+                        && range.getSyncStatus() != DOING;
+                assertFalse(mergeable, "unmerged ranges " + prev + " and " + range);
+            }
+            prev = range;
+        }
+    }
+}
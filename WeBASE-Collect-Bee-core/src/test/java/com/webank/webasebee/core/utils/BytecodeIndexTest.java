@@ -0,0 +1,66 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.core.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import com.webank.webasebee.common.constants.BinConstant;
+import com.webank.webasebee.common.tools.BytecodeIndex;
+import com.webank.webasebee.core.WebaseBeeApplicationTests;
+
+/**
+ * BytecodeIndexTest
+ *
+ * @Description: BytecodeIndexTest
+ *
+ */
+public class BytecodeIndexTest extends WebaseBeeApplicationTests {
+    private static final String PREFIX = "608060405234801561001057600080fd5b50";
+    private static final String META = StringUtils.repeat("a", BinConstant.META_DATA_HASH_LENGTH + 1);
+    private static final String RUNTIME_A = "6080604052600436106049576000357c0100000000000000000000000000000000";
+    private static final String RUNTIME_B = "6080604052348015600f57600080fd5b506004361060325760003560e01c80";
+
+    private BytecodeIndex buildIndex() {
+        Map<String, String> binaryMap = new HashMap<>();
+        binaryMap.put(PREFIX + "61011e806100206000396000f3fe" + RUNTIME_A + META, "ContractA");
+        binaryMap.put(PREFIX + "6101a4806100206000396000f3fe" + RUNTIME_B + META, "ContractB");
+        return new BytecodeIndex(binaryMap);
+    }
+
+    @Test
+    public void testGetByBinary() {
+        BytecodeIndex index = buildIndex();
+        String input = "0x" + PREFIX + "6101A4806100206000396000F3FE" + RUNTIME_B + META + "0000000000000001";
+        assertEquals("ContractB", index.getByBinary(input).getValue());
+        assertNull(index.getByBinary("0x" + PREFIX + "6101a4806100206000396000f3fe" + META));
+    }
+
+    @Test
+    public void testGetByCode() {
+        BytecodeIndex index = buildIndex();
+        assertEquals("ContractA", index.getByCode("0x" + RUNTIME_A.toUpperCase() + META).getValue());
+        assertEquals("ContractA", index.getByCode("0x" + RUNTIME_A + META).getValue());
+        assertEquals("ContractB", index.getByCode("0x" + RUNTIME_B + META).getValue());
+        assertNull(index.getByCode("0x" + RUNTIME_B + "ff" + META));
+    }
+}
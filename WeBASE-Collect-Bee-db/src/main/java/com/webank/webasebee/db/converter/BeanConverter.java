@@ -18,13 +18,14 @@ package com.webank.webasebee.db.converter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.stereotype.Service;
 
 import com.webank.webasebee.common.bo.data.CommonBO;
 import com.webank.webasebee.db.entity.IdEntity;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.exceptions.UtilException;
 import cn.hutool.core.util.ClassLoaderUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -40,12 +41,15 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 @Slf4j
 public class BeanConverter {
-    public IdEntity convertBOToEntity(CommonBO bo, String type)
-            throws InstantiationException, IllegalAccessException, UtilException {
-        IdEntity entity = (IdEntity) ClassLoaderUtil
-                .loadClass("com.webank.webasebee.db.generated.entity." + type + "." + bo.getIdentifier()).newInstance();
-        BeanUtil.copyProperties(bo, entity);
-        return entity;
+    /** entity classes keyed by type.identifier */
+    private final Map<String, Class<?>> entityClasses = new ConcurrentHashMap<>();
+    /** mappers keyed by source class, then target class */
+    private final Map<Class<?>, Map<Class<?>, BeanMapper<?, ?>>> mappers = new ConcurrentHashMap<>();
+
+    public IdEntity convertBOToEntity(CommonBO bo, String type) throws UtilException {
+        Class<?> entityClass = entityClasses.computeIfAbsent(type + "." + bo.getIdentifier(),
+                k -> ClassLoaderUtil.loadClass("com.webank.webasebee.db.generated.entity." + k));
+        return (IdEntity) convert(bo, entityClass);
     }
 
     public List<IdEntity> convertToEntities(Collection<CommonBO> bos, String type) {
@@ -53,11 +57,26 @@ public class BeanConverter {
         bos.forEach(bo -> {
             try {
                 list.add(convertBOToEntity(bo, type));
-            } catch (InstantiationException | IllegalAccessException | UtilException e) {
+            } catch (UtilException | IllegalStateException e) {
                 log.error("Bean convert error", e);
             }
         });
         return list;
     }
 
+    /**
+     * Copy the non null properties of the source bean to a new instance of the target class.
+     * 
+     * @param source
+     * @param targetClass
+     * @return target bean
+     */
+    @SuppressWarnings("unchecked")
+    public <S, T> T convert(S source, Class<T> targetClass) {
+        BeanMapper<S, T> mapper = (BeanMapper<S, T>) mappers
+                .computeIfAbsent(source.getClass(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(targetClass, k -> new BeanMapper<>((Class<S>) source.getClass(), targetClass));
+        return mapper.map(source);
+    }
+
 }
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.converter;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.primitives.Primitives;
+
+import cn.hutool.core.convert.Convert;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BeanMapper copies the non null properties of a source bean to a new target bean. The constructor, getters and
+ * setters are resolved once and bound to lambdas by LambdaMetafactory, so each copy is plain method calls without
+ * reflection. Chained setters generated by lombok @Accessors(chain = true) are supported.
+ *
+ * @Description: BeanMapper
+ *
+ */
+@Slf4j
+public class BeanMapper<S, T> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Supplier<T> constructor;
+    private final List<PropertyCopier> copiers;
+
+    public BeanMapper(Class<S> sourceClass, Class<T> targetClass) {
+        this.constructor = buildConstructor(targetClass);
+        Map<String, Method> getters = findGetters(sourceClass);
+        List<PropertyCopier> list = new ArrayList<>();
+        for (Method setter : findSetters(targetClass).values()) {
+            String property = StringUtils.uncapitalize(setter.getName().substring(3));
+            Method getter = getters.get(property);
+            if (getter == null) {
+                continue;
+            }
+            Class<?> targetType = setter.getParameterTypes()[0];
+            boolean convert = !Primitives.wrap(targetType).isAssignableFrom(Primitives.wrap(getter.getReturnType()));
+            list.add(new PropertyCopier(buildGetter(getter), buildSetter(setter), convert ? targetType : null));
+        }
+        this.copiers = list;
+    }
+
+    public T map(S source) {
+        T target = constructor.get();
+        for (PropertyCopier copier : copiers) {
+            copier.copy(source, target);
+        }
+        return target;
+    }
+
+    private static Map<String, Method> findGetters(Class<?> clazz) {
+        Map<String, Method> getters = new HashMap<>();
+        for (Method m : clazz.getMethods()) {
+            if (Modifier.isStatic(m.getModifiers()) || m.isBridge() || m.getParameterCount() != 0
+                    || m.getReturnType() == void.class || m.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            if (m.getName().startsWith("get") && m.getName().length() > 3) {
+                getters.put(StringUtils.uncapitalize(m.getName().substring(3)), m);
+            } else if (m.getName().startsWith("is") && m.getName().length() > 2
+                    && m.getReturnType() == boolean.class) {
+                getters.put(StringUtils.uncapitalize(m.getName().substring(2)), m);
+            }
+        }
+        return getters;
+    }
+
+    private static Map<String, Method> findSetters(Class<?> clazz) {
+        Map<String, Method> setters = new HashMap<>();
+        for (Method m : clazz.getMethods()) {
+            if (!Modifier.isStatic(m.getModifiers()) && !m.isBridge() && m.getParameterCount() == 1
+                    && m.getName().startsWith("set") && m.getName().length() > 3) {
+                setters.putIfAbsent(m.getName(), m);
+            }
+        }
+        return setters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> buildConstructor(Class<T> clazz) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(clazz, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class), handle, MethodType.methodType(clazz));
+            return (Supplier<T>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            log.warn("Bind constructor of {} failed, fall back to reflection: {}", clazz.getName(), e.getMessage());
+            return () -> {
+                try {
+                    return clazz.newInstance();
+                } catch (InstantiationException | IllegalAccessException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> buildGetter(Method method) {
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class), handle, MethodType
+                            .methodType(Primitives.wrap(method.getReturnType()), method.getDeclaringClass()));
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            log.warn("Bind getter {} failed, fall back to reflection: {}", method, e.getMessage());
+            return source -> {
+                try {
+                    return method.invoke(source);
+                } catch (ReflectiveOperationException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> buildSetter(Method method) {
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class), handle,
+                    MethodType.methodType(void.class, method.getDeclaringClass(),
+                            Primitives.wrap(method.getParameterTypes()[0])));
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            log.warn("Bind setter {} failed, fall back to reflection: {}", method, e.getMessage());
+            return (target, value) -> {
+                try {
+                    method.invoke(target, value);
+                } catch (ReflectiveOperationException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            };
+        }
+    }
+
+    private static class PropertyCopier {
+        private final Function<Object, Object> getter;
+        private final BiConsumer<Object, Object> setter;
+        /** not null if the value must be converted to the type of the setter. */
+        private final Class<?> convertType;
+
+        PropertyCopier(Function<Object, Object> getter, BiConsumer<Object, Object> setter, Class<?> convertType) {
+            this.getter = getter;
+            this.setter = setter;
+            this.convertType = convertType;
+        }
+
+        void copy(Object source, Object target) {
+            Object value = getter.apply(source);
+            if (value != null && convertType != null) {
+                value = Convert.convert(convertType, value);
+            }
+            if (value != null) {
+                setter.accept(target, value);
+            }
+        }
+    }
+}
@@ -18,17 +18,18 @@ package com.webank.webasebee.db.dao;
 import java.math.BigInteger;
 import java.sql.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.webank.webasebee.common.bo.data.AccountInfoBO;
+import com.webank.webasebee.db.converter.BeanConverter;
 import com.webank.webasebee.db.entity.AccountInfo;
 import com.webank.webasebee.db.repository.AccountInfoRepository;
 
-import cn.hutool.core.bean.BeanUtil;
-
 /**
  * AccountInfoDAO
  *
@@ -43,6 +44,13 @@ public class AccountInfoDAO {
     /** @Fields accountInfoRepository : account info repository */
     @Autowired
     private AccountInfoRepository accountInfoRepository;
+    @Autowired
+    private BeanConverter beanConverter;
+    @Autowired
+    private BatchInsertDAO batchInsertDao;
+
+    @Value("${system.batchInsert:false}")
+    private boolean batchInsert;
 
     /**
      * Get account info from transaction receipt and insert AccountInfo object into db.
@@ -62,14 +70,20 @@ public class AccountInfoDAO {
     }
 
     public void save(List<AccountInfoBO> list) {
+        if (batchInsert) {
+            batchInsertDao.insertAll(list.stream().map(this::convert).collect(Collectors.toList()));
+            return;
+        }
         list.forEach(this::save);
 
     }
 
     public void save(AccountInfoBO bo) {
-        AccountInfo accountInfo = new AccountInfo();
-        BeanUtil.copyProperties(bo, accountInfo, true);
-        accountInfoRepository.save(accountInfo);
+        accountInfoRepository.save(convert(bo));
+    }
+
+    public AccountInfo convert(AccountInfoBO bo) {
+        return beanConverter.convert(bo, AccountInfo.class);
     }
 
     /**
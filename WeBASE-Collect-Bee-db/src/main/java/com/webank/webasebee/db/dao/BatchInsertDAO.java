@@ -0,0 +1,156 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.dao;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.tuple.InMemoryValueGenerationStrategy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.Stopwatch;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BatchInsertDAO inserts entities with JdbcTemplate.batchUpdate, since the IDENTITY primary key of IdEntity disables
+ * the jdbc batching of hibernate. The insert statement of each entity class is built once from the hibernate
+ * metadata, so the table and column names are the same as the JPA path. Append rewriteBatchedStatements=true to the
+ * jdbc url to let the MySQL driver rewrite each batch to multi-row INSERTs.
+ *
+ * @Description: BatchInsertDAO
+ *
+ */
+@Component
+@Slf4j
+public class BatchInsertDAO {
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${system.batchInsertSize:1000}")
+    private int batchInsertSize;
+
+    private final Map<Class<?>, InsertStatement> statements = new ConcurrentHashMap<>();
+
+    /**
+     * Insert the entities, entities of different classes are inserted into their own tables.
+     * 
+     * @param entities
+     */
+    public void insertAll(Collection<?> entities) {
+        Map<Class<?>, List<Object>> map = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            map.computeIfAbsent(entity.getClass(), k -> new ArrayList<>()).add(entity);
+        }
+        map.forEach((k, v) -> {
+            Stopwatch st = Stopwatch.createStarted();
+            InsertStatement statement = statements.computeIfAbsent(k, this::buildStatement);
+            jdbcTemplate.batchUpdate(statement.sql, v, Math.max(1, batchInsertSize),
+                    (ps, entity) -> statement.setValues(ps, entity));
+            log.debug("{} batch insert {} rows succeed, use time {}ms", k.getName(), v.size(),
+                    st.stop().elapsed(TimeUnit.MILLISECONDS));
+        });
+    }
+
+    private InsertStatement buildStatement(Class<?> clazz) {
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersister(clazz);
+        InMemoryValueGenerationStrategy[] generations =
+                persister.getEntityMetamodel().getInMemoryValueGenerationStrategies();
+        boolean[] insertability = persister.getPropertyInsertability();
+        List<Integer> properties = new ArrayList<>();
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < persister.getPropertyNames().length; i++) {
+            String[] columnNames = persister.getPropertyColumnNames(i);
+            if (!insertability[i] || columnNames.length != 1) {
+                continue;
+            }
+            if (!properties.isEmpty()) {
+                columns.append(", ");
+                values.append(", ");
+            }
+            properties.add(i);
+            columns.append(columnNames[0]);
+            values.append("?");
+        }
+        boolean[] timestamps = new boolean[properties.size()];
+        for (int i = 0; i < properties.size(); i++) {
+            InMemoryValueGenerationStrategy generation = generations[properties.get(i)];
+            // @CreationTimestamp and @UpdateTimestamp are generated by hibernate, not by the database.
+            timestamps[i] = generation != null && generation.getGenerationTiming().includesInsert();
+        }
+        String sql = "insert into " + persister.getTableName() + " (" + columns + ") values (" + values + ")";
+        log.info("Build batch insert statement of {}: {}", clazz.getName(), sql);
+        return new InsertStatement(sql, persister, properties, timestamps);
+    }
+
+    private static class InsertStatement {
+        private final String sql;
+        private final AbstractEntityPersister persister;
+        private final List<Integer> properties;
+        private final boolean[] timestamps;
+
+        InsertStatement(String sql, AbstractEntityPersister persister, List<Integer> properties,
+                boolean[] timestamps) {
+            this.sql = sql;
+            this.persister = persister;
+            this.properties = properties;
+            this.timestamps = timestamps;
+        }
+
+        void setValues(PreparedStatement ps, Object entity) throws SQLException {
+            Object[] values = persister.getPropertyValues(entity);
+            for (int i = 0; i < properties.size(); i++) {
+                Object value = timestamps[i] ? new Date() : values[properties.get(i)];
+                ps.setObject(i + 1, toJdbcValue(value));
+            }
+        }
+
+        private static Object toJdbcValue(Object value) {
+            if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof Timestamp)) {
+                return new Timestamp(((Date) value).getTime());
+            }
+            if (value instanceof BigInteger) {
+                return new BigDecimal((BigInteger) value);
+            }
+            if (value instanceof Enum) {
+                return ((Enum<?>) value).ordinal();
+            }
+            return value;
+        }
+    }
+}
@@ -15,15 +15,18 @@
  */
 package com.webank.webasebee.db.dao;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
 
-import com.google.common.collect.Lists;
 import com.webank.webasebee.common.bo.data.CommonBO;
 import com.webank.webasebee.db.converter.BeanConverter;
 import com.webank.webasebee.db.entity.IdEntity;
@@ -46,23 +49,31 @@ public class BlockCommonDAO {
     private BeanConverter beanConverter;
     @Autowired
     private RepositoryService repositoryService;
+    @Autowired
+    private BatchInsertDAO batchInsertDao;
+
+    @Value("${system.batchInsert:false}")
+    private boolean batchInsert;
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
     public void save(List<CommonBO> bos, String type) {
-        Map<String, List<CommonBO>> map = bos.stream().collect(Collectors.toMap(k -> k.getIdentifier(),
-                v -> Lists.newArrayList(v), (List<CommonBO> newValueList, List<CommonBO> oldValueList) -> {
-                    oldValueList.addAll(newValueList);
-                    return oldValueList;
-                }));
+        Map<String, List<CommonBO>> map =
+                bos.stream().collect(Collectors.groupingBy(CommonBO::getIdentifier, LinkedHashMap::new,
+                        Collectors.toList()));
         String postfix = type.equalsIgnoreCase("event") ? "EventRepository" : "MethodRepository";
-        List<IdEntity> entities = beanConverter.convertToEntities(bos, type);
         map.forEach((k, v) -> {
-            if (!repositoryService.getRepository(StringUtils.uncapitalize(k) + postfix).isPresent()) {
-                log.error("{} not existed", StringUtils.uncapitalize(k) + postfix);
+            String repositoryName = StringUtils.uncapitalize(k) + postfix;
+            Optional<JpaRepository> repository = repositoryService.getRepository(repositoryName);
+            if (!repository.isPresent()) {
+                log.error("{} not existed", repositoryName);
                 return;
             }
-            BaseDAO.saveAllWithTimeLog(repositoryService.getRepository(StringUtils.uncapitalize(k) + postfix).get(),
-                    entities);
+            List<IdEntity> entities = beanConverter.convertToEntities(v, type);
+            if (batchInsert) {
+                batchInsertDao.insertAll(entities);
+            } else {
+                BaseDAO.saveAllWithTimeLog(repository.get(), entities);
+            }
         });
-
     }
 }
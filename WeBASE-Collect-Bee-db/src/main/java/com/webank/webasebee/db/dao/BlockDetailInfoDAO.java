@@ -15,15 +15,17 @@
  */
 package com.webank.webasebee.db.dao;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.webank.webasebee.common.bo.data.BlockDetailInfoBO;
+import com.webank.webasebee.db.converter.BeanConverter;
 import com.webank.webasebee.db.entity.BlockDetailInfo;
 import com.webank.webasebee.db.repository.BlockDetailInfoRepository;
 
-import cn.hutool.core.bean.BeanUtil;
-
 /**
  * BlockDetailInfoDAO
  *
@@ -35,10 +37,11 @@ import cn.hutool.core.bean.BeanUtil;
 public class BlockDetailInfoDAO implements SaveInterface<BlockDetailInfo> {
     @Autowired
     private BlockDetailInfoRepository blockDetailInfoRepository;
+    @Autowired
+    private BeanConverter beanConverter;
     
     public void save(BlockDetailInfoBO bo) {
-        BlockDetailInfo blockDetailInfo = new BlockDetailInfo();
-        BeanUtil.copyProperties(bo, blockDetailInfo, true);
+        BlockDetailInfo blockDetailInfo = beanConverter.convert(bo, BlockDetailInfo.class);
         save(blockDetailInfo);
     }
 
@@ -50,6 +53,20 @@ public class BlockDetailInfoDAO implements SaveInterface<BlockDetailInfo> {
         return blockDetailInfoRepository.findByBlockHeight(blockHeight);
     }
 
+    /**
+     * Get the stored hashes of the blocks from start to end(inclusive) in one query.
+     * 
+     * @return key: block height, value: block hash
+     */
+    public Map<Long, String> getBlockHashes(long startBlockHeight, long endBlockHeight) {
+        Map<Long, String> hashes = new HashMap<>();
+        for (BlockDetailInfo info : blockDetailInfoRepository.findByBlockHeightBetween(startBlockHeight,
+                endBlockHeight)) {
+            hashes.put(info.getBlockHeight(), info.getBlockHash());
+        }
+        return hashes;
+    }
+
     public BlockDetailInfo getBlockDetailInfoByBlockHash(String blockHash) {
         return blockDetailInfoRepository.findByBlockHash(blockHash);
     }
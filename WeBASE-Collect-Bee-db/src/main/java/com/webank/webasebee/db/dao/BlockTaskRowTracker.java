@@ -0,0 +1,180 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.dao;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.webank.webasebee.common.constants.BlockConstants;
+import com.webank.webasebee.common.enums.BlockCertaintyEnum;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.db.repository.BlockTaskPoolRepository;
+
+/**
+ * BlockTaskRowTracker keeps one block_task_pool row per block.
+ *
+ * @Description: BlockTaskRowTracker
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "system.taskTracker", havingValue = "row", matchIfMissing = true)
+public class BlockTaskRowTracker implements BlockTaskTracker {
+    /** max number of block heights in the in list of one update. */
+    private static final int MAX_IN_LIST_SIZE = 1000;
+
+    @Autowired
+    private BlockTaskPoolRepository blockTaskPoolRepository;
+
+    @Override
+    public long getTaskPoolHeight() {
+        Optional<BlockTaskPool> item = blockTaskPoolRepository.findTopByOrderByBlockHeightDesc();
+        long height = 0;
+        if (item.isPresent()) {
+            height = item.get().getBlockHeight() + 1;
+        }
+        return height;
+    }
+
+    @Override
+    public void prepareTask(long begin, long end, boolean certainty) {
+        List<BlockTaskPool> list = Lists.newArrayList();
+        for (long i = begin; i <= end; i++) {
+            BlockTaskPool pool =
+                    new BlockTaskPool().setBlockHeight(i).setSyncStatus((short) TxInfoStatusEnum.INIT.getStatus());
+            if (certainty) {
+                pool.setCertainty((short) BlockCertaintyEnum.FIXED.getCertainty());
+            } else {
+                if (i <= end - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER) {
+                    pool.setCertainty((short) BlockCertaintyEnum.FIXED.getCertainty());
+                } else {
+                    pool.setCertainty((short) BlockCertaintyEnum.UNCERTAIN.getCertainty());
+                }
+            }
+            list.add(pool);
+        }
+        blockTaskPoolRepository.saveAll(list);
+    }
+
+    @Override
+    public Optional<BlockTaskPool> findByBlockHeight(long blockHeight) {
+        return blockTaskPoolRepository.findByBlockHeight(blockHeight);
+    }
+
+    @Override
+    public List<BlockTaskPool> findByCertainty(short certainty) {
+        return blockTaskPoolRepository.findByCertainty(certainty);
+    }
+
+    @Override
+    public List<BlockTaskPool> findByBlockHeightRange(long startNumber, long endNumber) {
+        return blockTaskPoolRepository.findByBlockHeightRange(startNumber, endNumber);
+    }
+
+    @Override
+    public List<Long> findBlockHeightsByBlockHeightRange(long startNumber, long endNumber) {
+        return blockTaskPoolRepository.findBlockHeightsByBlockHeightRange(startNumber, endNumber);
+    }
+
+    @Override
+    public long countBySyncStatus(short syncStatus) {
+        return blockTaskPoolRepository.countBySyncStatus(syncStatus);
+    }
+
+    @Override
+    public long countByBlockHeightRange(long startNumber, long endNumber) {
+        return blockTaskPoolRepository.countByBlockHeightRange(startNumber, endNumber);
+    }
+
+    @Override
+    public List<BlockTaskPool> findUnNormalRecords() {
+        return blockTaskPoolRepository.findUnNormalRecords();
+    }
+
+    @Override
+    public List<BlockTaskPool> findBySyncStatusOrderByBlockHeightLimit(short syncStatus, int limit) {
+        return blockTaskPoolRepository.findBySyncStatusOrderByBlockHeightLimit(syncStatus, limit);
+    }
+
+    @Override
+    public List<BlockTaskPool> findBySyncStatusAndDepotUpdatetimeLessThan(short syncStatus, Date time) {
+        return blockTaskPoolRepository.findBySyncStatusAndDepotUpdatetimeLessThan(syncStatus, time);
+    }
+
+    @Override
+    public void saveAll(List<BlockTaskPool> tasks) {
+        blockTaskPoolRepository.saveAll(tasks);
+    }
+
+    @Override
+    public void setSyncStatusByBlockHeight(short syncStatus, Date updateTime, long blockHeight) {
+        blockTaskPoolRepository.setSyncStatusByBlockHeight(syncStatus, updateTime, blockHeight);
+    }
+
+    @Override
+    public void setSyncStatusByBlockHeights(short syncStatus, Date updateTime, List<Long> blockHeights) {
+        for (List<Long> part : Lists.partition(blockHeights, MAX_IN_LIST_SIZE)) {
+            blockTaskPoolRepository.setSyncStatusByBlockHeights(syncStatus, updateTime, part);
+        }
+    }
+
+    /**
+     * Claim the tasks by one update which marks them with a new token, and then load the tasks of the token.
+     */
+    @Override
+    public List<BlockTaskPool> claimInitTasks(int limit) {
+        String owner = UUID.randomUUID().toString();
+        int count = blockTaskPoolRepository.claimBySyncStatus((short) TxInfoStatusEnum.INIT.getStatus(),
+                (short) TxInfoStatusEnum.DOING.getStatus(), owner, new Date(), limit);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        return blockTaskPoolRepository.findByDepotOwnerOrderByBlockHeight(owner);
+    }
+
+    @Override
+    public void setSyncStatusByBlockHeightRange(short syncStatus, Date updateTime, long startBlockHeight,
+            long endBlockHeight) {
+        blockTaskPoolRepository.setSyncStatusByBlockHeightRange(syncStatus, updateTime, startBlockHeight,
+                endBlockHeight);
+    }
+
+    @Override
+    public void setCertaintyByBlockHeight(short certainty, long blockHeight) {
+        blockTaskPoolRepository.setCertaintyByBlockHeight(certainty, blockHeight);
+    }
+
+    @Override
+    public void setCertaintyByBlockHeights(short certainty, List<Long> blockHeights) {
+        for (List<Long> part : Lists.partition(blockHeights, MAX_IN_LIST_SIZE)) {
+            blockTaskPoolRepository.setCertaintyByBlockHeights(certainty, part);
+        }
+    }
+
+    @Override
+    public void setSyncStatusAndCertaintyByBlockHeight(short syncStatus, short certainty, long blockHeight) {
+        blockTaskPoolRepository.setSyncStatusAndCertaintyByBlockHeight(syncStatus, certainty, blockHeight);
+    }
+
+}
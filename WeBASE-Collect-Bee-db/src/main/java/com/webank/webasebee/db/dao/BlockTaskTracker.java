@@ -0,0 +1,84 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.dao;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import com.webank.webasebee.db.entity.BlockTaskPool;
+
+/**
+ * BlockTaskTracker tracks the sync status and certainty of every block. The queries keep the shape of the
+ * BlockTaskPoolRepository queries, so the depot services work the same whichever tracker is configured by
+ * system.taskTracker: row(default) keeps one block_task_pool row per block, watermark keeps range-compressed records.
+ *
+ * @Description: BlockTaskTracker
+ *
+ */
+public interface BlockTaskTracker {
+
+    /**
+     * @return the next block height to prepare.
+     */
+    public long getTaskPoolHeight();
+
+    public void prepareTask(long begin, long end, boolean certainty);
+
+    public Optional<BlockTaskPool> findByBlockHeight(long blockHeight);
+
+    public List<BlockTaskPool> findByCertainty(short certainty);
+
+    public List<BlockTaskPool> findByBlockHeightRange(long startNumber, long endNumber);
+
+    /**
+     * Get the heights of the tasks from start to end(inclusive), without loading the tasks.
+     */
+    public List<Long> findBlockHeightsByBlockHeightRange(long startNumber, long endNumber);
+
+    public long countBySyncStatus(short syncStatus);
+
+    public long countByBlockHeightRange(long startNumber, long endNumber);
+
+    public List<BlockTaskPool> findUnNormalRecords();
+
+    public List<BlockTaskPool> findBySyncStatusOrderByBlockHeightLimit(short syncStatus, int limit);
+
+    public List<BlockTaskPool> findBySyncStatusAndDepotUpdatetimeLessThan(short syncStatus, Date time);
+
+    public void saveAll(List<BlockTaskPool> tasks);
+
+    public void setSyncStatusByBlockHeight(short syncStatus, Date updateTime, long blockHeight);
+
+    public void setSyncStatusByBlockHeights(short syncStatus, Date updateTime, List<Long> blockHeights);
+
+    /**
+     * Atomically set at most limit init tasks of the lowest heights to doing, and return them.
+     */
+    public List<BlockTaskPool> claimInitTasks(int limit);
+
+    /**
+     * Set the status of the blocks from start to end(inclusive).
+     */
+    public void setSyncStatusByBlockHeightRange(short syncStatus, Date updateTime, long startBlockHeight,
+            long endBlockHeight);
+
+    public void setCertaintyByBlockHeight(short certainty, long blockHeight);
+
+    public void setCertaintyByBlockHeights(short certainty, List<Long> blockHeights);
+
+    public void setSyncStatusAndCertaintyByBlockHeight(short syncStatus, short certainty, long blockHeight);
+}
@@ -0,0 +1,464 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.webank.webasebee.common.constants.BlockConstants;
+import com.webank.webasebee.common.enums.BlockCertaintyEnum;
+import com.webank.webasebee.common.enums.TxInfoStatusEnum;
+import com.webank.webasebee.db.entity.BlockTaskPool;
+import com.webank.webasebee.db.entity.BlockTaskRange;
+import com.webank.webasebee.db.repository.BlockTaskRangeRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BlockTaskWatermarkTracker keeps the task status as range-compressed block_task_range records. Adjacent blocks with
+ * the same status and certainty share one record, so the finished blocks collapse into a single record below the
+ * contiguous-done watermark, and only the in-flight and error blocks above it are kept as small ranges. A status
+ * change updates a few range records instead of one row per block.
+ * 
+ * The ranges are held in memory and written through in their own transaction. A change made inside a transaction,
+ * like the DONE flip of BlockStoreService, is applied after that transaction commits, so a block is never recorded as
+ * DONE before its data. The tracker is only supported by the single instance depot.
+ *
+ * @Description: BlockTaskWatermarkTracker
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "system.taskTracker", havingValue = "watermark")
+@Slf4j
+public class BlockTaskWatermarkTracker implements BlockTaskTracker {
+    @Autowired
+    private BlockTaskRangeRepository blockTaskRangeRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Value("${system.multiLiving:false}")
+    private boolean multiLiving;
+
+    /** key:start height, value:range, the ranges never overlap. */
+    private final TreeMap<Long, BlockTaskRange> ranges = new TreeMap<>();
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        if (multiLiving) {
+            throw new IllegalStateException(
+                    "The watermark task tracker only supports the single instance depot, set system.taskTracker=row");
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        load();
+        log.info("Load {} block task ranges, the watermark is {}", ranges.size(), getWatermark());
+    }
+
+    private synchronized void load() {
+        ranges.clear();
+        for (BlockTaskRange range : blockTaskRangeRepository.findAllByOrderByStartHeight()) {
+            ranges.put(range.getStartHeight(), range);
+        }
+    }
+
+    /**
+     * @return the lowest block height which is not finished, all the blocks below it are DONE and FIXED.
+     */
+    public synchronized long getWatermark() {
+        Map.Entry<Long, BlockTaskRange> first = ranges.firstEntry();
+        if (first == null) {
+            return 0;
+        }
+        BlockTaskRange range = first.getValue();
+        return range.getSyncStatus() == TxInfoStatusEnum.DONE.getStatus()
+                && range.getCertainty() == BlockCertaintyEnum.FIXED.getCertainty() ? range.getEndHeight() + 1
+                        : range.getStartHeight();
+    }
+
+    @Override
+    public synchronized long getTaskPoolHeight() {
+        return ranges.isEmpty() ? 0 : ranges.lastEntry().getValue().getEndHeight() + 1;
+    }
+
+    @Override
+    public void prepareTask(long begin, long end, boolean certainty) {
+        Date now = new Date();
+        short init = (short) TxInfoStatusEnum.INIT.getStatus();
+        short fixed = (short) BlockCertaintyEnum.FIXED.getCertainty();
+        short uncertain = (short) BlockCertaintyEnum.UNCERTAIN.getCertainty();
+        long fixedEnd = certainty ? end : Math.min(end, end - BlockConstants.MAX_FORK_CERTAINTY_BLOCK_NUMBER);
+        apply(changes -> {
+            if (begin <= fixedEnd) {
+                assign(begin, fixedEnd, init, fixed, now, true, changes);
+            }
+            if (Math.max(begin, fixedEnd + 1) <= end) {
+                assign(Math.max(begin, fixedEnd + 1), end, init, uncertain, now, true, changes);
+            }
+        });
+    }
+
+    @Override
+    public synchronized Optional<BlockTaskPool> findByBlockHeight(long blockHeight) {
+        BlockTaskRange range = getRange(blockHeight);
+        return range == null ? Optional.empty() : Optional.of(toPool(range, blockHeight));
+    }
+
+    @Override
+    public List<BlockTaskPool> findByCertainty(short certainty) {
+        return find(r -> r.getCertainty() == certainty, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<BlockTaskPool> findByBlockHeightRange(long startNumber, long endNumber) {
+        return find(r -> true, startNumber, endNumber, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<Long> findBlockHeightsByBlockHeightRange(long startNumber, long endNumber) {
+        List<Long> result = new ArrayList<>();
+        for (BlockTaskRange range : overlapping(startNumber, endNumber)) {
+            long end = Math.min(endNumber, range.getEndHeight());
+            for (long h = Math.max(startNumber, range.getStartHeight()); h <= end; h++) {
+                result.add(h);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long countBySyncStatus(short syncStatus) {
+        return ranges.values().stream().filter(r -> r.getSyncStatus() == syncStatus).mapToLong(BlockTaskRange::size)
+                .sum();
+    }
+
+    @Override
+    public synchronized long countByBlockHeightRange(long startNumber, long endNumber) {
+        long count = 0;
+        for (BlockTaskRange range : overlapping(startNumber, endNumber)) {
+            count += Math.min(endNumber, range.getEndHeight()) - Math.max(startNumber, range.getStartHeight()) + 1;
+        }
+        return count;
+    }
+
+    @Override
+    public List<BlockTaskPool> findUnNormalRecords() {
+        return find(r -> r.getSyncStatus() == TxInfoStatusEnum.ERROR.getStatus()
+                || r.getSyncStatus() == TxInfoStatusEnum.TIMEOUT.getStatus(), Long.MIN_VALUE, Long.MAX_VALUE,
+                Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<BlockTaskPool> findBySyncStatusOrderByBlockHeightLimit(short syncStatus, int limit) {
+        return find(r -> r.getSyncStatus() == syncStatus, Long.MIN_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    @Override
+    public List<BlockTaskPool> findBySyncStatusAndDepotUpdatetimeLessThan(short syncStatus, Date time) {
+        return find(r -> r.getSyncStatus() == syncStatus && r.getDepotUpdatetime() != null
+                && r.getDepotUpdatetime().before(time), Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void saveAll(List<BlockTaskPool> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        List<BlockTaskPool> sorted = new ArrayList<>(tasks);
+        sorted.sort((a, b) -> Long.compare(a.getBlockHeight(), b.getBlockHeight()));
+        Date now = new Date();
+        apply(changes -> {
+            int i = 0;
+            while (i < sorted.size()) {
+                BlockTaskPool first = sorted.get(i);
+                int j = i + 1;
+                while (j < sorted.size() && sorted.get(j).getBlockHeight() == sorted.get(j - 1).getBlockHeight() + 1
+                        && sorted.get(j).getSyncStatus() == first.getSyncStatus()
+                        && sorted.get(j).getCertainty() == first.getCertainty()) {
+                    j++;
+                }
+                assign(first.getBlockHeight(), sorted.get(j - 1).getBlockHeight(), first.getSyncStatus(),
+                        first.getCertainty(), now, true, changes);
+                i = j;
+            }
+        });
+    }
+
+    @Override
+    public void setSyncStatusByBlockHeight(short syncStatus, Date updateTime, long blockHeight) {
+        apply(changes -> assign(blockHeight, blockHeight, syncStatus, null, updateTime, changes));
+    }
+
+    @Override
+    public void setSyncStatusByBlockHeights(short syncStatus, Date updateTime, List<Long> blockHeights) {
+        if (blockHeights.isEmpty()) {
+            return;
+        }
+        apply(changes -> forEachRun(blockHeights,
+                (start, end) -> assign(start, end, syncStatus, null, updateTime, changes)));
+    }
+
+    @Override
+    public synchronized List<BlockTaskPool> claimInitTasks(int limit) {
+        List<BlockTaskPool> tasks = findBySyncStatusOrderByBlockHeightLimit((short) TxInfoStatusEnum.INIT.getStatus(),
+                limit);
+        if (tasks.isEmpty()) {
+            return tasks;
+        }
+        Date now = new Date();
+        tasks.forEach(t -> t.setSyncStatus((short) TxInfoStatusEnum.DOING.getStatus()).setDepotUpdatetime(now));
+        setSyncStatusByBlockHeights((short) TxInfoStatusEnum.DOING.getStatus(), now,
+                tasks.stream().map(BlockTaskPool::getBlockHeight).collect(Collectors.toList()));
+        return tasks;
+    }
+
+    @Override
+    public void setSyncStatusByBlockHeightRange(short syncStatus, Date updateTime, long startBlockHeight,
+            long endBlockHeight) {
+        if (startBlockHeight <= endBlockHeight) {
+            apply(changes -> assign(startBlockHeight, endBlockHeight, syncStatus, null, updateTime, changes));
+        }
+    }
+
+    @Override
+    public void setCertaintyByBlockHeight(short certainty, long blockHeight) {
+        apply(changes -> assign(blockHeight, blockHeight, null, certainty, null, changes));
+    }
+
+    @Override
+    public void setCertaintyByBlockHeights(short certainty, List<Long> blockHeights) {
+        if (blockHeights.isEmpty()) {
+            return;
+        }
+        apply(changes -> forEachRun(blockHeights,
+                (start, end) -> assign(start, end, null, certainty, null, changes)));
+    }
+
+    @Override
+    public void setSyncStatusAndCertaintyByBlockHeight(short syncStatus, short certainty, long blockHeight) {
+        apply(changes -> assign(blockHeight, blockHeight, syncStatus, certainty, new Date(), changes));
+    }
+
+    /** call the action with the start and end of every run of contiguous block heights. */
+    private static void forEachRun(List<Long> blockHeights, BiConsumer<Long, Long> action) {
+        List<Long> sorted = new ArrayList<>(blockHeights);
+        Collections.sort(sorted);
+        int i = 0;
+        while (i < sorted.size()) {
+            int j = i + 1;
+            while (j < sorted.size() && sorted.get(j) <= sorted.get(j - 1) + 1) {
+                j++;
+            }
+            action.accept(sorted.get(i), sorted.get(j - 1));
+            i = j;
+        }
+    }
+
+    private BlockTaskRange getRange(long blockHeight) {
+        Map.Entry<Long, BlockTaskRange> e = ranges.floorEntry(blockHeight);
+        return e == null || e.getValue().getEndHeight() < blockHeight ? null : e.getValue();
+    }
+
+    private List<BlockTaskRange> overlapping(long startNumber, long endNumber) {
+        if (startNumber > endNumber) {
+            return Collections.emptyList();
+        }
+        Map.Entry<Long, BlockTaskRange> floor = ranges.floorEntry(startNumber);
+        long from = floor == null || floor.getValue().getEndHeight() < startNumber ? startNumber : floor.getKey();
+        return new ArrayList<>(ranges.subMap(from, true, endNumber, true).values());
+    }
+
+    private synchronized List<BlockTaskPool> find(Predicate<BlockTaskRange> filter, long startNumber,
+            long endNumber, int limit) {
+        List<BlockTaskPool> list = new ArrayList<>();
+        for (BlockTaskRange range : overlapping(startNumber, endNumber)) {
+            if (!filter.test(range)) {
+                continue;
+            }
+            long end = Math.min(endNumber, range.getEndHeight());
+            for (long h = Math.max(startNumber, range.getStartHeight()); h <= end; h++) {
+                if (list.size() >= limit) {
+                    return list;
+                }
+                list.add(toPool(range, h));
+            }
+        }
+        return list;
+    }
+
+    private static BlockTaskPool toPool(BlockTaskRange range, long blockHeight) {
+        BlockTaskPool pool = new BlockTaskPool().setBlockHeight(blockHeight).setSyncStatus(range.getSyncStatus())
+                .setCertainty(range.getCertainty());
+        pool.setDepotUpdatetime(range.getDepotUpdatetime());
+        return pool;
+    }
+
+    /**
+     * Apply the change to the ranges and write the changed ranges through, after the current transaction commits if
+     * there is one. The ranges are reloaded if the write fails.
+     * 
+     * @param mutation
+     */
+    private void apply(Consumer<Changes> mutation) {
+        Runnable task = () -> {
+            synchronized (this) {
+                Changes changes = new Changes();
+                mutation.accept(changes);
+                try {
+                    transactionTemplate.execute(status -> {
+                        blockTaskRangeRepository.deleteAll(changes.removed);
+                        blockTaskRangeRepository.saveAll(changes.dirty);
+                        return null;
+                    });
+                } catch (RuntimeException e) {
+                    log.error("Save block task ranges failed, reload them: {}", e.getMessage());
+                    load();
+                    throw e;
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Set the status, certainty and update time of the tracked blocks from start to end, null means unchanged.
+     */
+    private void assign(long start, long end, Short syncStatus, Short certainty, Date updateTime, Changes changes) {
+        assign(start, end, syncStatus, certainty, updateTime, false, changes);
+    }
+
+    /**
+     * Set the status, certainty and update time of the blocks from start to end, null means unchanged. The blocks not
+     * tracked yet are added if create is true, both status and certainty must be given then, like an insert.
+     */
+    private void assign(long start, long end, Short syncStatus, Short certainty, Date updateTime, boolean create,
+            Changes changes) {
+        split(start, changes);
+        split(end + 1, changes);
+        long next = start;
+        for (BlockTaskRange range : new ArrayList<>(ranges.subMap(start, true, end, true).values())) {
+            if (range.getStartHeight() > next && create) {
+                add(next, range.getStartHeight() - 1, syncStatus, certainty, updateTime, changes);
+            }
+            if (syncStatus != null) {
+                range.setSyncStatus(syncStatus);
+            }
+            if (certainty != null) {
+                range.setCertainty(certainty);
+            }
+            if (updateTime != null) {
+                range.setDepotUpdatetime(updateTime);
+            }
+            changes.dirty.add(range);
+            next = range.getEndHeight() + 1;
+        }
+        if (next <= end && create) {
+            add(next, end, syncStatus, certainty, updateTime, changes);
+        }
+        merge(start, end, changes);
+    }
+
+    private void add(long start, long end, short syncStatus, short certainty, Date updateTime, Changes changes) {
+        BlockTaskRange range = new BlockTaskRange().setStartHeight(start).setEndHeight(end).setSyncStatus(syncStatus)
+                .setCertainty(certainty).setDepotUpdatetime(updateTime);
+        ranges.put(start, range);
+        changes.dirty.add(range);
+    }
+
+    /** make the height the start of a range if a range covers it. */
+    private void split(long height, Changes changes) {
+        Map.Entry<Long, BlockTaskRange> e = ranges.lowerEntry(height);
+        if (e == null || e.getValue().getEndHeight() < height) {
+            return;
+        }
+        BlockTaskRange left = e.getValue();
+        BlockTaskRange right = new BlockTaskRange().setStartHeight(height).setEndHeight(left.getEndHeight())
+                .setSyncStatus(left.getSyncStatus()).setCertainty(left.getCertainty())
+                .setDepotUpdatetime(left.getDepotUpdatetime());
+        left.setEndHeight(height - 1);
+        ranges.put(height, right);
+        changes.dirty.add(left);
+        changes.dirty.add(right);
+    }
+
+    /** merge the adjacent ranges around start to end which have the same status and certainty. */
+    private void merge(long start, long end, Changes changes) {
+        Long from = ranges.lowerKey(start);
+        Map.Entry<Long, BlockTaskRange> last = ranges.higherEntry(end);
+        long to = last == null ? end : last.getKey();
+        BlockTaskRange left = null;
+        for (BlockTaskRange range : new ArrayList<>(
+                ranges.subMap(from == null ? start : from, true, to, true).values())) {
+            if (left != null && left.getEndHeight() + 1 == range.getStartHeight()
+                    && left.getSyncStatus() == range.getSyncStatus() && left.getCertainty() == range.getCertainty()
+                    // the doing blocks of different time are kept apart for the timeout check
+                    && (range.getSyncStatus() != TxInfoStatusEnum.DOING.getStatus()
+                            || Objects.equals(left.getDepotUpdatetime(), range.getDepotUpdatetime()))) {
+                left.setEndHeight(range.getEndHeight());
+                if (left.getDepotUpdatetime() == null || (range.getDepotUpdatetime() != null
+                        && range.getDepotUpdatetime().after(left.getDepotUpdatetime()))) {
+                    left.setDepotUpdatetime(range.getDepotUpdatetime());
+                }
+                ranges.remove(range.getStartHeight());
+                changes.dirty.add(left);
+                changes.dirty.remove(range);
+                if (range.getPkId() != null) {
+                    changes.removed.add(range);
+                }
+                continue;
+            }
+            left = range;
+        }
+    }
+
+    private static class Changes {
+        /** ranges are compared by identity, their fields change during the mutation. */
+        private final Set<BlockTaskRange> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<BlockTaskRange> removed = new ArrayList<>();
+    }
+}
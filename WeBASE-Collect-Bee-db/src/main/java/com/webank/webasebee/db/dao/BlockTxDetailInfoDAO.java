@@ -19,20 +19,21 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.sql.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.fisco.bcos.web3j.protocol.Web3j;
 import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
 import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.webank.webasebee.common.bo.data.BlockTxDetailInfoBO;
+import com.webank.webasebee.db.converter.BeanConverter;
 import com.webank.webasebee.db.entity.BlockTxDetailInfo;
 import com.webank.webasebee.db.repository.BlockTxDetailInfoRepository;
 import com.webank.webasebee.extractor.ods.EthClient;
 
-import cn.hutool.core.bean.BeanUtil;
-
 /**
  * BlockTxDetailInfoDAO
  *
@@ -49,6 +50,13 @@ public class BlockTxDetailInfoDAO {
     /** @Fields blockTxDetailInfoRepository : block transaction detail info repository */
     @Autowired
     private BlockTxDetailInfoRepository blockTxDetailInfoRepository;
+    @Autowired
+    private BeanConverter beanConverter;
+    @Autowired
+    private BatchInsertDAO batchInsertDao;
+
+    @Value("${system.batchInsert:false}")
+    private boolean batchInsert;
 
     /**
      * Get block transaction detail info from transaction receipt object and insert BlockTxDetailInfo into db.
@@ -76,13 +84,19 @@ public class BlockTxDetailInfoDAO {
     }
 
     public void save(BlockTxDetailInfoBO bo) {
-        BlockTxDetailInfo blockTxDetailInfo = new BlockTxDetailInfo();
-        BeanUtil.copyProperties(bo, blockTxDetailInfo, true);
-        blockTxDetailInfoRepository.save(blockTxDetailInfo);
+        blockTxDetailInfoRepository.save(convert(bo));
     }
 
     public void save(List<BlockTxDetailInfoBO> list) {
+        if (batchInsert) {
+            batchInsertDao.insertAll(list.stream().map(this::convert).collect(Collectors.toList()));
+            return;
+        }
         list.forEach(this::save);
     }
 
+    public BlockTxDetailInfo convert(BlockTxDetailInfoBO bo) {
+        return beanConverter.convert(bo, BlockTxDetailInfo.class);
+    }
+
 }
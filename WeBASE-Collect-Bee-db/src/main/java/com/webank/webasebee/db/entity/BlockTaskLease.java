@@ -0,0 +1,64 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.entity;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * BlockTaskLease is a lease of the blocks from start height to end height(inclusive), the tasks of the blocks are
+ * only claimed by the owner of the lease until the lease expires.
+ *
+ * @Description: BlockTaskLease
+ *
+ */
+@Data
+@Accessors(chain = true)
+@Table(name = "block_task_lease", indexes = { @Index(name = "owner", columnList = "owner") })
+@Entity(name = "block_task_lease")
+@EqualsAndHashCode(callSuper = true)
+public class BlockTaskLease extends IdEntity {
+
+    private static final long serialVersionUID = 3021584432371795104L;
+
+    @Column(name = "start_height", unique = true)
+    private long startHeight;
+
+    @Column(name = "end_height")
+    private long endHeight;
+
+    /** @Fields owner : id of the instance which holds the lease */
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "expire_time")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expireTime;
+
+    /** @Fields finished : all the blocks of the lease are done */
+    @Column(name = "finished")
+    private boolean finished;
+}
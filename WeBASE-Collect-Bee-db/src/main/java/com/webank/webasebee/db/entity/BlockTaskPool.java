@@ -44,7 +44,8 @@ import lombok.experimental.Accessors;
 @Accessors(chain = true)
 @Table(name = "block_task_pool", indexes = { @Index(name = "sync_status", columnList = "sync_status"),
         @Index(name = "certainty", columnList = "certainty"),
-        @Index(name = "depot_updatetime", columnList = "depot_updatetime") })
+        @Index(name = "depot_updatetime", columnList = "depot_updatetime"),
+        @Index(name = "depot_owner", columnList = "depot_owner") })
 @Entity(name = "block_task_pool")
 @EqualsAndHashCode(callSuper = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -66,6 +67,10 @@ public class BlockTaskPool extends IdEntity {
     @Column(name = "handle_item")
     private short handleItem = 0;
 
+    /** @Fields depotOwner : token of the claim which the task is doing by */
+    @Column(name = "depot_owner")
+    private String depotOwner;
+
     /** @Fields updatetime : update time */
     @UpdateTimestamp
     @Column(name = "depot_updatetime")
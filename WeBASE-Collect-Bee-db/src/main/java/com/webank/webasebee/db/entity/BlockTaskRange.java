@@ -0,0 +1,68 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.entity;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * BlockTaskRange is a range-compressed record of the watermark task tracker, all the blocks from start height to end
+ * height(inclusive) share the same status and certainty.
+ *
+ * @Description: BlockTaskRange
+ *
+ */
+@Data
+@Accessors(chain = true)
+@Table(name = "block_task_range", indexes = { @Index(name = "start_height", columnList = "start_height") })
+@Entity(name = "block_task_range")
+@EqualsAndHashCode(callSuper = true)
+public class BlockTaskRange extends IdEntity {
+
+    private static final long serialVersionUID = -2405307046563120465L;
+
+    @Column(name = "start_height")
+    private long startHeight;
+
+    @Column(name = "end_height")
+    private long endHeight;
+
+    /** @Fields syncStatus : sync status of the blocks */
+    @Column(name = "sync_status")
+    private short syncStatus;
+
+    /** @Fields certainty : certainty of fork check */
+    @Column(name = "certainty")
+    private short certainty;
+
+    @Column(name = "depot_updatetime")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date depotUpdatetime;
+
+    public long size() {
+        return endHeight - startHeight + 1;
+    }
+}
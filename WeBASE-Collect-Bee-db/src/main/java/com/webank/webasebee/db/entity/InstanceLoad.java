@@ -0,0 +1,67 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.entity;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * InstanceLoad is the load of a multi-living instance, reported by the instance itself periodically.
+ *
+ * @Description: InstanceLoad
+ *
+ */
+@Data
+@Accessors(chain = true)
+@Table(name = "instance_load")
+@Entity(name = "instance_load")
+@EqualsAndHashCode(callSuper = true)
+public class InstanceLoad extends IdEntity {
+
+    private static final long serialVersionUID = -6310285839013371452L;
+
+    /** @Fields owner : id of the instance, the same as the owner of its leases */
+    @Column(name = "owner", unique = true)
+    private String owner;
+
+    /** @Fields pendingBlocks : blocks of the leases held by the instance which are not done */
+    @Column(name = "pending_blocks")
+    private long pendingBlocks;
+
+    /** @Fields blocksPerSecond : blocks claimed per second since the last report */
+    @Column(name = "blocks_per_second")
+    private double blocksPerSecond;
+
+    @Column(name = "update_time")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updateTime;
+
+    /**
+     * estimated seconds to finish the pending blocks.
+     */
+    public double remainingTime() {
+        return pendingBlocks / Math.max(blocksPerSecond, 0.1);
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.webank.webasebee.db.repository;
 
+import java.util.List;
+
 import javax.transaction.Transactional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -45,6 +47,8 @@ public interface BlockDetailInfoRepository
      */
     public BlockDetailInfo findTopByOrderByBlockHeightDesc();
 
+    public List<BlockDetailInfo> findByBlockHeightBetween(long startBlockHeight, long endBlockHeight);
+
     /**
      * Get records' count from block_detail_info table.
      * 
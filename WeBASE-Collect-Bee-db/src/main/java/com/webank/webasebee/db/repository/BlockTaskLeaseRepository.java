@@ -0,0 +1,87 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import javax.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.webank.webasebee.db.entity.BlockTaskLease;
+
+/**
+ * BlockTaskLeaseRepository
+ *
+ * @Description: BlockTaskLeaseRepository
+ *
+ */
+@Repository
+public interface BlockTaskLeaseRepository extends JpaRepository<BlockTaskLease, Long> {
+
+    public Optional<BlockTaskLease> findTopByOrderByEndHeightDesc();
+
+    public List<BlockTaskLease> findByOwnerAndFinishedOrderByStartHeight(String owner, boolean finished);
+
+    /**
+     * Take the unfinished lease of the lowest height which has no owner or is expired.
+     * 
+     * @return the number of taken leases, 0 or 1
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set owner = ?1, expire_time = ?2 where finished = 0 and (owner is null or expire_time < ?3) order by start_height limit 1", nativeQuery = true)
+    public int acquire(String owner, Date expireTime, Date now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set expire_time = ?3 where pk_id = ?1 and owner = ?2 and finished = 0", nativeQuery = true)
+    public int renew(long pkId, String owner, Date expireTime);
+
+    /**
+     * Shrink the lease to end at the new end height, only if it is still held by the owner and ends at the end height.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set end_height = ?4 where pk_id = ?1 and owner = ?2 and end_height = ?3 and finished = 0", nativeQuery = true)
+    public int shrink(long pkId, String owner, long endHeight, long newEndHeight);
+
+    /**
+     * Reopen the finished leases which overlap the blocks from start to end(inclusive), and release their owners.
+     * 
+     * @return the number of reopened leases
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set finished = 0, owner = null, expire_time = null where finished = 1 and start_height <= ?2 and end_height >= ?1", nativeQuery = true)
+    public int reopen(long startHeight, long endHeight);
+
+    /**
+     * Finish the lease held by the owner, only if none of its blocks is in another status than the done status. The
+     * check is in the same statement, so a block reset to init just before is never left in a finished lease.
+     * 
+     * @return the number of finished leases, 0 or 1
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} l set l.finished = 1 where l.pk_id = ?1 and l.owner = ?2 and not exists (select 1 from block_task_pool p where p.block_height between l.start_height and l.end_height and p.sync_status <> ?3)", nativeQuery = true)
+    public int finish(long pkId, String owner, short doneStatus);
+}
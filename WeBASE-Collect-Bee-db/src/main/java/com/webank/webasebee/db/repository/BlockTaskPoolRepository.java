@@ -47,12 +47,15 @@ public interface BlockTaskPoolRepository
 
     public List<BlockTaskPool> findByCertainty(short certainty);
 
-    @Query(value = "select * from #{#entityName} where block_height >= ?1 or block_height <= ?2 ", nativeQuery = true)
+    @Query(value = "select * from #{#entityName} where block_height >= ?1 and block_height <= ?2 ", nativeQuery = true)
     public List<BlockTaskPool> findByBlockHeightRange(long startNumber, long endNumber);
 
+    @Query(value = "select p.blockHeight from #{#entityName} p where p.blockHeight >= ?1 and p.blockHeight <= ?2")
+    public List<Long> findBlockHeightsByBlockHeightRange(long startNumber, long endNumber);
+
     public long countBySyncStatus(short syncStatus);
 
-    @Query(value = "select count(pk_id) from #{#entityName} where block_height >= ?1 or block_height <= ?2 ", nativeQuery = true)
+    @Query(value = "select count(pk_id) from #{#entityName} where block_height >= ?1 and block_height <= ?2 ", nativeQuery = true)
     public long countByBlockHeightRange(long startNumber, long endNumber);
 
     @Query(value = "select * from #{#entityName} where sync_status = 4 or sync_status = 3 ", nativeQuery = true)
@@ -65,6 +68,31 @@ public interface BlockTaskPoolRepository
     public List<BlockTaskPool> findBySyncStatusModByBlockHeightLimit(int shardingCount, int shardingItem,
             short syncStatus, int limit);
 
+    /**
+     * Claim at most limit tasks of the status from the lowest height, the claimed tasks are set to the new status and
+     * marked by the owner token. Concurrent claims never get the same task, since the update locks the rows it
+     * changes and rechecks the status of the rows locked by others.
+     * 
+     * @return the number of claimed tasks
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set sync_status = ?2, depot_owner = ?3, depot_updatetime = ?4 where sync_status = ?1 order by block_height limit ?5", nativeQuery = true)
+    public int claimBySyncStatus(short syncStatus, short newSyncStatus, String owner, Date updateTime, int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set sync_status = ?2, depot_owner = ?3, depot_updatetime = ?4 where sync_status = ?1 and block_height >= ?5 and block_height <= ?6 order by block_height limit ?7", nativeQuery = true)
+    public int claimBySyncStatusAndBlockHeightRange(short syncStatus, short newSyncStatus, String owner,
+            Date updateTime, long startNumber, long endNumber, int limit);
+
+    public List<BlockTaskPool> findByDepotOwnerOrderByBlockHeight(String owner);
+
+    public Optional<BlockTaskPool> findFirstByBlockHeightBetweenAndSyncStatusOrderByBlockHeight(long startNumber,
+            long endNumber, short syncStatus);
+
+    public long countByBlockHeightBetweenAndSyncStatusNot(long startNumber, long endNumber, short syncStatus);
+
     public List<BlockTaskPool> findBySyncStatusAndDepotUpdatetimeLessThan(short syncStatus, Date time);
 
     @Transactional
@@ -72,11 +100,27 @@ public interface BlockTaskPoolRepository
     @Query(value = "update #{#entityName} set sync_status = ?1, depot_updatetime= ?2 where block_height = ?3", nativeQuery = true)
     public void setSyncStatusByBlockHeight(short syncStatus, Date updateTime, long blockHeight);
 
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set sync_status = ?1, depot_updatetime= ?2 where block_height in ?3", nativeQuery = true)
+    public void setSyncStatusByBlockHeights(short syncStatus, Date updateTime, List<Long> blockHeights);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set sync_status = ?1, depot_updatetime= ?2 where block_height >= ?3 and block_height <= ?4", nativeQuery = true)
+    public void setSyncStatusByBlockHeightRange(short syncStatus, Date updateTime, long startBlockHeight,
+            long endBlockHeight);
+
     @Transactional
     @Modifying
     @Query(value = "update #{#entityName} set certainty = ?1 where block_height = ?2", nativeQuery = true)
     public void setCertaintyByBlockHeight(short certainty, long blockHeight);
 
+    @Transactional
+    @Modifying
+    @Query(value = "update #{#entityName} set certainty = ?1 where block_height in ?2", nativeQuery = true)
+    public void setCertaintyByBlockHeights(short certainty, List<Long> blockHeights);
+
     @Transactional
     @Modifying
     @Query(value = "update #{#entityName} set sync_status = ?1, certainty = ?2 where block_height = ?3", nativeQuery = true)
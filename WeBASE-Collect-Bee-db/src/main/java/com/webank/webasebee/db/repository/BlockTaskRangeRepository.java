@@ -0,0 +1,35 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.db.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.webank.webasebee.db.entity.BlockTaskRange;
+
+/**
+ * BlockTaskRangeRepository
+ *
+ * @Description: BlockTaskRangeRepository
+ *
+ */
+@Repository
+public interface BlockTaskRangeRepository extends JpaRepository<BlockTaskRange, Long> {
+
+    public List<BlockTaskRange> findAllByOrderByStartHeight();
+}
@@ -15,9 +15,12 @@
  */
 package com.webank.webasebee.db.service;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -38,22 +41,28 @@ public class RepositoryService {
     @Autowired
     private Map<String, JpaSpecificationExecutor> specifications;
 
+    /** repositories and specification executors keyed by the lower case bean name. */
+    private Map<String, JpaRepository> repositoryIndex;
+    private Map<String, JpaSpecificationExecutor> specificationIndex;
+
+    @PostConstruct
+    public void init() {
+        repositoryIndex = buildIndex(repositories);
+        specificationIndex = buildIndex(specifications);
+    }
+
     public Optional<JpaRepository> getRepository(String name) {
-        for (String k : repositories.keySet()) {
-            if (name.equalsIgnoreCase(k)) {
-                return Optional.of(repositories.get(k));
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(repositoryIndex.get(name.toLowerCase()));
     }
 
     public Optional<JpaSpecificationExecutor> getJpaSpecificationExecutor(String name) {
-        for (String k : specifications.keySet()) {
-            if (name.equalsIgnoreCase(k)) {
-                return Optional.of(specifications.get(k));
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(specificationIndex.get(name.toLowerCase()));
+    }
+
+    private static <T> Map<String, T> buildIndex(Map<String, T> beans) {
+        Map<String, T> index = new HashMap<>(beans.size() * 2);
+        beans.forEach((k, v) -> index.putIfAbsent(k.toLowerCase(), v));
+        return index;
     }
 
 }
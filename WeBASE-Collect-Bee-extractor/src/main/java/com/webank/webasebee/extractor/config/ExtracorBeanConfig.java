@@ -15,8 +15,20 @@
  */
 package com.webank.webasebee.extractor.config;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 /**
  * ExtracorBeanConfig
@@ -28,6 +40,40 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 @EnableCaching
+@EnableScheduling
 public class ExtracorBeanConfig {
+    /** max weight of the block cache, a block weighs 1 + its transaction count. */
+    @Value("${system.cache.blockMaxWeight:100000}")
+    private long blockMaxWeight;
+    @Value("${system.cache.blockExpireSeconds:600}")
+    private long blockExpireSeconds;
+    @Value("${system.cache.transactionReceiptMaxSize:100000}")
+    private long transactionReceiptMaxSize;
+    @Value("${system.cache.transactionReceiptExpireSeconds:600}")
+    private long transactionReceiptExpireSeconds;
+    /** contract code is immutable, so the code cache is bounded by size only. */
+    @Value("${system.cache.codeMaxSize:10000}")
+    private long codeMaxSize;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCache blockCache = new CaffeineCache("block",
+                Caffeine.newBuilder().maximumWeight(blockMaxWeight)
+                        .<Object, Object> weigher((k, v) -> weighBlock((Block) v))
+                        .expireAfterWrite(blockExpireSeconds, TimeUnit.SECONDS).recordStats().build(),
+                false);
+        CaffeineCache transactionReceiptCache = new CaffeineCache("transactionReceipt",
+                Caffeine.newBuilder().maximumSize(transactionReceiptMaxSize)
+                        .expireAfterWrite(transactionReceiptExpireSeconds, TimeUnit.SECONDS).recordStats().build(),
+                false);
+        CaffeineCache codeCache =
+                new CaffeineCache("code", Caffeine.newBuilder().maximumSize(codeMaxSize).recordStats().build(), false);
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(Arrays.asList(blockCache, transactionReceiptCache, codeCache));
+        return cacheManager;
+    }
 
+    private static int weighBlock(Block block) {
+        return block.getTransactions() == null ? 1 : 1 + block.getTransactions().size();
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.extractor.ods;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CacheStatsService logs the size, hit, miss and eviction statistics of the extractor caches periodically.
+ *
+ * @Description: CacheStatsService
+ *
+ */
+@Service
+@Slf4j
+public class CacheStatsService {
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Scheduled(fixedDelayString = "${system.cache.statsLogInterval:60000}")
+    public void logStats() {
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (!(cache instanceof CaffeineCache)) {
+                continue;
+            }
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+                    ((CaffeineCache) cache).getNativeCache();
+            CacheStats stats = nativeCache.stats();
+            log.info("Cache {} size {}, hit {}, miss {}, hitRate {}, eviction {}", name,
+                    nativeCache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                    String.format("%.2f", stats.hitRate()), stats.evictionCount());
+        }
+    }
+}
@@ -17,18 +17,33 @@ package com.webank.webasebee.extractor.ods;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.fisco.bcos.web3j.protocol.Web3j;
 import org.fisco.bcos.web3j.protocol.core.DefaultBlockParameter;
 import org.fisco.bcos.web3j.protocol.core.DefaultBlockParameterName;
+import org.fisco.bcos.web3j.protocol.core.Request;
+import org.fisco.bcos.web3j.protocol.core.Response;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock;
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.TransactionObject;
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.TransactionResult;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosTransaction;
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosTransactionReceipt;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BlockHash;
 import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
 import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
@@ -50,21 +65,58 @@ import lombok.extern.slf4j.Slf4j;
 public class EthClient {
     @Autowired
     private Web3j web3j;
+    @Autowired
+    private CacheManager cacheManager;
+
+    /** max number of requests pipelined on the channel connection at the same time by the batch methods. */
+    @Value("${system.rpcInFlightWindow:64}")
+    private int rpcInFlightWindow;
+
+    /** fetch blocks with full transaction objects, fall back to transaction hashes if the node refuses. */
+    @Value("${system.fullTransactionObjects:false}")
+    private boolean fullTransactionObjects;
 
-    @Cacheable(cacheNames = { "block" })
+    @Cacheable(cacheNames = { "block" }, unless = "#result == null")
     @Retry
     public Block getBlock(BigInteger blockHeightNumber) throws IOException {
         Stopwatch stopwatch = Stopwatch.createStarted();
         log.debug("get block number: {}", blockHeightNumber);
-        Block block = web3j.getBlockByNumber(DefaultBlockParameter.valueOf(blockHeightNumber), false).send().getBlock();
+        Block block = null;
+        if (fullTransactionObjects) {
+            block = getFullBlock(blockHeightNumber);
+        }
+        if (block == null) {
+            block = web3j.getBlockByNumber(DefaultBlockParameter.valueOf(blockHeightNumber), false).send().getBlock();
+        }
         Stopwatch st1 = stopwatch.stop();
         log.info("get block:{} succeed, eth.getBlock useTime: {}", blockHeightNumber,
                 st1.elapsed(TimeUnit.MILLISECONDS));
         return block;
     }
 
+    /**
+     * Get the block with full transaction objects.
+     * 
+     * @param blockHeightNumber
+     * @return null if the node refuses, eg. the response exceeds the size limit of the node.
+     */
+    private Block getFullBlock(BigInteger blockHeightNumber) {
+        try {
+            BcosBlock response = web3j.getBlockByNumber(DefaultBlockParameter.valueOf(blockHeightNumber), true).send();
+            if (!response.hasError()) {
+                return response.getBlock();
+            }
+            log.warn("get block:{} with full transactions failed: {}, fall back to transaction hashes.",
+                    blockHeightNumber, response.getError().getMessage());
+        } catch (IOException | RuntimeException e) {
+            log.warn("get block:{} with full transactions failed: {}, fall back to transaction hashes.",
+                    blockHeightNumber, e.getMessage());
+        }
+        return null;
+    }
+
     public BcosTransactionReceipt getTransactionReceipt(TransactionResult result) throws IOException {
-        return getTransactionReceipt((String) result.get());
+        return getTransactionReceipt(getTransactionHash(result));
     }
 
     @Cacheable(cacheNames = { "transactionReceipt" })
@@ -77,8 +129,182 @@ public class EthClient {
 
     }
 
-    @Cacheable(cacheNames = { "code" })
+    @Cacheable(cacheNames = { "code" }, unless = "#result == null")
     public String getCodeByContractAddress(String contractAddress) throws IOException {
         return web3j.getCode(contractAddress, DefaultBlockParameterName.LATEST).sendForReturnString();
     }
+
+    /**
+     * Fetch the blocks of the given heights, keeping up to rpcInFlightWindow requests in flight.
+     * 
+     * @param blockHeightNumbers
+     * @return blocks in the same order as the heights.
+     * @throws IOException
+     */
+    public List<Block> getBlocks(List<BigInteger> blockHeightNumbers) throws IOException {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Cache cache = cacheManager.getCache("block");
+        List<Block> blocks = new ArrayList<>(blockHeightNumbers.size());
+        List<BigInteger> missingHeights = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < blockHeightNumbers.size(); i++) {
+            Block block = cache == null ? null : cache.get(blockHeightNumbers.get(i), Block.class);
+            blocks.add(block);
+            if (block == null) {
+                missingHeights.add(blockHeightNumbers.get(i));
+                missingIndexes.add(i);
+            }
+        }
+        List<BcosBlock> responses = null;
+        if (fullTransactionObjects) {
+            try {
+                responses =
+                        pipeline(missingHeights, h -> web3j.getBlockByNumber(DefaultBlockParameter.valueOf(h), true));
+            } catch (IOException e) {
+                log.warn("get {} blocks with full transactions failed: {}, fall back to transaction hashes.",
+                        missingHeights.size(), e.getMessage());
+            }
+        }
+        if (responses == null) {
+            responses = pipeline(missingHeights, h -> web3j.getBlockByNumber(DefaultBlockParameter.valueOf(h), false));
+        }
+        for (int i = 0; i < responses.size(); i++) {
+            BcosBlock response = responses.get(i);
+            if (fullTransactionObjects && response.hasError()) {
+                log.warn("get block:{} with full transactions failed: {}, fall back to transaction hashes.",
+                        missingHeights.get(i), response.getError().getMessage());
+                response = web3j.getBlockByNumber(DefaultBlockParameter.valueOf(missingHeights.get(i)), false).send();
+            }
+            Block block = response.getBlock();
+            blocks.set(missingIndexes.get(i), block);
+            if (cache != null && block != null) {
+                cache.put(missingHeights.get(i), block);
+            }
+        }
+        log.info("get {} blocks succeed, {} from cache, eth.getBlocks useTime: {}", blocks.size(),
+                blocks.size() - missingHeights.size(), stopwatch.stop().elapsed(TimeUnit.MILLISECONDS));
+        return blocks;
+    }
+
+    /**
+     * Evict the block and the receipts of its transactions from the caches, once the block has been stored.
+     * 
+     * @param block
+     */
+    @SuppressWarnings("rawtypes")
+    public void evictBlock(Block block) {
+        Cache blockCache = cacheManager.getCache("block");
+        if (blockCache != null) {
+            blockCache.evict(block.getNumber());
+        }
+        Cache receiptCache = cacheManager.getCache("transactionReceipt");
+        if (receiptCache != null && block.getTransactions() != null) {
+            for (TransactionResult result : block.getTransactions()) {
+                receiptCache.evict(getTransactionHash(result));
+            }
+        }
+    }
+
+    /**
+     * Fetch the receipts of the given transaction hashes, keeping up to rpcInFlightWindow requests in flight.
+     * 
+     * @param hashes
+     * @return receipts in the same order as the hashes.
+     * @throws IOException
+     */
+    public List<BcosTransactionReceipt> getTransactionReceipts(List<String> hashes) throws IOException {
+        Cache cache = cacheManager.getCache("transactionReceipt");
+        List<BcosTransactionReceipt> receipts = new ArrayList<>(hashes.size());
+        List<String> missingHashes = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            BcosTransactionReceipt receipt =
+                    cache == null ? null : cache.get(hashes.get(i), BcosTransactionReceipt.class);
+            receipts.add(receipt);
+            if (receipt == null) {
+                missingHashes.add(hashes.get(i));
+                missingIndexes.add(i);
+            }
+        }
+        List<BcosTransactionReceipt> fetched = pipeline(missingHashes, h -> web3j.getTransactionReceipt(h));
+        for (int i = 0; i < fetched.size(); i++) {
+            receipts.set(missingIndexes.get(i), fetched.get(i));
+            if (cache != null) {
+                cache.put(missingHashes.get(i), fetched.get(i));
+            }
+        }
+        return receipts;
+    }
+
+    /**
+     * Fetch the transactions of the given transaction hashes, keeping up to rpcInFlightWindow requests in flight.
+     * 
+     * @param hashes
+     * @return transactions in the same order as the hashes.
+     * @throws IOException
+     */
+    public List<Optional<Transaction>> getTransactions(List<String> hashes) throws IOException {
+        List<BcosTransaction> responses = pipeline(hashes, h -> web3j.getTransactionByHash(h));
+        List<Optional<Transaction>> transactions = new ArrayList<>(responses.size());
+        for (BcosTransaction response : responses) {
+            transactions.add(response.getTransaction());
+        }
+        return transactions;
+    }
+
+    /**
+     * Get the hashes of the blocks on the chain now, keeping up to rpcInFlightWindow requests in flight. Only the hash
+     * is requested instead of the block header, and the block cache is bypassed, since a cached block may be the one
+     * replaced by a fork.
+     * 
+     * @param blockHeightNumbers
+     * @return block hashes in the same order as the heights, null if the node has no such block.
+     * @throws IOException
+     */
+    public List<String> getBlockHashes(List<BigInteger> blockHeightNumbers) throws IOException {
+        List<BlockHash> responses =
+                pipeline(blockHeightNumbers, h -> web3j.getBlockHashByNumber(DefaultBlockParameter.valueOf(h)));
+        List<String> hashes = new ArrayList<>(responses.size());
+        for (BlockHash response : responses) {
+            hashes.add(response.hasError() ? null : response.getBlockHashByNumber());
+        }
+        return hashes;
+    }
+
+    /**
+     * Get the transaction hash of the block transaction, whether the block is fetched with full transaction objects or
+     * with transaction hashes.
+     * 
+     * @param result
+     * @return transaction hash
+     */
+    @SuppressWarnings("rawtypes")
+    public static String getTransactionHash(TransactionResult result) {
+        if (result instanceof TransactionObject) {
+            return ((TransactionObject) result).getHash();
+        }
+        return (String) result.get();
+    }
+
+    private <P, T extends Response<?>> List<T> pipeline(List<P> params, Function<P, Request<?, T>> requestBuilder)
+            throws IOException {
+        Semaphore window = new Semaphore(Math.max(1, rpcInFlightWindow));
+        List<CompletableFuture<T>> futures = new ArrayList<>(params.size());
+        try {
+            for (P param : params) {
+                window.acquire();
+                futures.add(requestBuilder.apply(param).sendAsync().whenComplete((r, e) -> window.release()));
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
 }
@@ -16,20 +16,41 @@
 package com.webank.webasebee.parser.facade;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.webank.webasebee.common.bo.data.AccountInfoBO;
 import com.webank.webasebee.common.bo.data.BlockAccountsInfoBO;
+import com.webank.webasebee.common.bo.data.BlockBundleBO;
 import com.webank.webasebee.common.bo.data.BlockInfoBO;
 import com.webank.webasebee.common.bo.data.BlockMethodInfo;
+import com.webank.webasebee.common.bo.data.BlockTxDetailInfoBO;
+import com.webank.webasebee.common.bo.data.EventBO;
+import com.webank.webasebee.common.bo.data.MethodBO;
+import com.webank.webasebee.common.bo.data.TransactionBundleBO;
 import com.webank.webasebee.parser.handler.AccountCrawlerHandler;
 import com.webank.webasebee.parser.handler.BlockCrawlerHandler;
 import com.webank.webasebee.parser.handler.EventCrawlerHandler;
 import com.webank.webasebee.parser.handler.MethodCrawlerHandler;
+import com.webank.webasebee.parser.service.BlockBundleService;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -52,27 +73,72 @@ public class ParseFacade implements ParseInterface {
     private EventCrawlerHandler eventCrawlHandler;
     @Autowired
     private MethodCrawlerHandler methodCrawlerHandler;
+    @Autowired
+    private BlockBundleService blockBundleService;
+
+    /** split the transactions of a block across the parse pool. */
+    @Value("${system.parallelParse:false}")
+    private boolean parallelParse;
+    /** parallelism of the parse pool, 0 means the number of processors. */
+    @Value("${system.parallelParseThreads:0}")
+    private int parallelParseThreads;
+    /** blocks with less transactions are parsed by the calling thread. */
+    @Value("${system.parallelParseMinTxs:64}")
+    private int parallelParseMinTxs;
+    /** number of transactions parsed by each task. */
+    @Value("${system.parallelParseChunkSize:32}")
+    private int parallelParseChunkSize;
+
+    private ForkJoinPool parsePool;
+
+    @PostConstruct
+    public void init() {
+        if (parallelParse) {
+            int parallelism =
+                    parallelParseThreads > 0 ? parallelParseThreads : Runtime.getRuntime().availableProcessors();
+            parsePool = new ForkJoinPool(parallelism);
+            log.info("Parse the transactions of big blocks in parallel, parallelism {}", parallelism);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (parsePool != null) {
+            parsePool.shutdown();
+        }
+    }
 
     /*
-     * dependency: P1) getAccounts-> Accounts. P2) depend on 1, txHashContractAddress(in order to get method address) ->
-     * methods. P3) depend on 2, txHashContractName.
+     * dependency: P0) block bundle, fetch receipts, transactions and codes once. P1) depend on 0, getAccounts->
+     * Accounts. P2) depend on 1, txHashContractAddress(in order to get method address) -> methods. P3) depend on 2,
+     * txHashContractName.
      */
     @Override
     public BlockInfoBO parse(Block block) throws IOException {
         BlockInfoBO blockInfo = new BlockInfoBO();
         Stopwatch st = Stopwatch.createStarted();
-        BlockAccountsInfoBO accountsBo = accountCrawlerHandler.crawl(block);
+        BlockBundleBO blockBundle = blockBundleService.build(block);
+        log.debug("Block {} , bundle {} transactions useTime {} ", block.getNumber(),
+                blockBundle.getTransactionBundles().size(), st.stop().elapsed(TimeUnit.MILLISECONDS));
+        st.reset().start();
+        if (parsePool != null && blockBundle.getTransactionBundles().size() >= parallelParseMinTxs) {
+            parseInParallel(blockBundle, blockInfo);
+            log.debug("Block {} , parallel crawler handle useTime {} ", block.getNumber(),
+                    st.stop().elapsed(TimeUnit.MILLISECONDS));
+            return blockInfo;
+        }
+        BlockAccountsInfoBO accountsBo = accountCrawlerHandler.crawl(blockBundle);
         log.debug("Block {} , Account crawler handle useTime {} ", block.getNumber(),
                 st.stop().elapsed(TimeUnit.MILLISECONDS));
         st.start();
         BlockMethodInfo blockMethodInfo =
-                methodCrawlerHandler.crawl(block, accountsBo.getTxHashContractAddressMapping());
+                methodCrawlerHandler.crawl(blockBundle, accountsBo.getTxHashContractAddressMapping());
         log.debug("Block {} , method crawler handle useTime {} ", block.getNumber(),
                 st.stop().elapsed(TimeUnit.MILLISECONDS));
         st.start();
         blockInfo.setAccountInfoList(accountsBo.getAccounts())
                 .setBlockDetailInfo(blockCrawlerHandler.handleBlockDetail(block))
-                .setEventInfoList(eventCrawlHandler.crawl(block, blockMethodInfo.getTxHashContractNameMapping()))
+                .setEventInfoList(eventCrawlHandler.crawl(blockBundle, blockMethodInfo.getTxHashContractNameMapping()))
                 .setMethodInfoList(blockMethodInfo.getMethodInfoList())
                 .setBlockTxDetailInfoList(blockMethodInfo.getBlockTxDetailInfoList());
         log.debug("Block {} , event crawler handle useTime {} ", block.getNumber(),
@@ -80,4 +146,69 @@ public class ParseFacade implements ParseInterface {
         return blockInfo;
     }
 
+    /**
+     * Run each crawler phase on chunks of the block transactions in the parse pool. Every phase waits for the previous
+     * one, so the contract addresses of all the deployments are known before the methods are parsed, and the chunk
+     * results are merged in the transaction order, the same as the sequential mode.
+     * 
+     * @param blockBundle
+     * @param blockInfo
+     * @throws IOException
+     */
+    private void parseInParallel(BlockBundleBO blockBundle, BlockInfoBO blockInfo) throws IOException {
+        Block block = blockBundle.getBlock();
+        List<List<TransactionBundleBO>> chunks =
+                Lists.partition(blockBundle.getTransactionBundles(), Math.max(1, parallelParseChunkSize));
+
+        List<AccountInfoBO> accounts = new ArrayList<>();
+        Map<String, String> txHashContractAddressMapping = new HashMap<>();
+        for (BlockAccountsInfoBO bo : forkJoin(chunks, chunk -> accountCrawlerHandler.crawl(block, chunk))) {
+            accounts.addAll(bo.getAccounts());
+            bo.getTxHashContractAddressMapping().forEach(txHashContractAddressMapping::putIfAbsent);
+        }
+
+        List<BlockTxDetailInfoBO> blockTxDetailInfoList = new ArrayList<>();
+        List<MethodBO> methodInfoList = new ArrayList<>();
+        Map<String, String> txHashContractNameMapping = new HashMap<>();
+        for (BlockMethodInfo bo : forkJoin(chunks, chunk -> {
+            try {
+                return methodCrawlerHandler.crawl(block, chunk, txHashContractAddressMapping);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })) {
+            blockTxDetailInfoList.addAll(bo.getBlockTxDetailInfoList());
+            methodInfoList.addAll(bo.getMethodInfoList());
+            bo.getTxHashContractNameMapping().forEach(txHashContractNameMapping::putIfAbsent);
+        }
+
+        List<EventBO> eventInfoList = new ArrayList<>();
+        forkJoin(chunks, chunk -> eventCrawlHandler.crawl(block, chunk, txHashContractNameMapping))
+                .forEach(eventInfoList::addAll);
+
+        blockInfo.setAccountInfoList(accounts).setBlockDetailInfo(blockCrawlerHandler.handleBlockDetail(block))
+                .setEventInfoList(eventInfoList).setMethodInfoList(methodInfoList)
+                .setBlockTxDetailInfoList(blockTxDetailInfoList);
+    }
+
+    private <T> List<T> forkJoin(List<List<TransactionBundleBO>> chunks, Function<List<TransactionBundleBO>, T> task)
+            throws IOException {
+        List<CompletableFuture<T>> futures = new ArrayList<>(chunks.size());
+        for (List<TransactionBundleBO> chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> task.apply(chunk), parsePool));
+        }
+        List<T> results = new ArrayList<>(chunks.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
 }
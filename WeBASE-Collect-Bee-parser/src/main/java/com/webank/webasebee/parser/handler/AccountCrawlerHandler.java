@@ -15,7 +15,6 @@
  */
 package com.webank.webasebee.parser.handler;
 
-import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Date;
@@ -26,21 +25,17 @@ import java.util.Map.Entry;
 import java.util.Optional;
 
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
-import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.TransactionResult;
-import org.fisco.bcos.web3j.protocol.core.methods.response.BcosTransactionReceipt;
-import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
 import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Service;
 
-import com.webank.webasebee.common.bo.contract.ContractMapsInfo;
 import com.webank.webasebee.common.bo.data.AccountInfoBO;
 import com.webank.webasebee.common.bo.data.BlockAccountsInfoBO;
-import com.webank.webasebee.common.constants.ContractConstants;
-import com.webank.webasebee.extractor.ods.EthClient;
+import com.webank.webasebee.common.bo.data.BlockBundleBO;
+import com.webank.webasebee.common.bo.data.TransactionBundleBO;
+import com.webank.webasebee.parser.service.ContractAddressCacheService;
 import com.webank.webasebee.parser.service.ContractConstructorService;
-import com.webank.webasebee.parser.service.TransactionService;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -58,73 +53,66 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AccountCrawlerHandler {
 
-    @Autowired
-    private EthClient ethClient;
-
     /** @Fields contractConstructorService : contract constructor service */
     @Autowired
     private ContractConstructorService contractConstructorService;
     @Autowired
-    private TransactionService transactionService;
-    @Autowired
-    private ContractMapsInfo contractMapsInfo;
+    private ContractAddressCacheService contractAddressCacheService;
 
-    @SuppressWarnings("rawtypes")
-    public BlockAccountsInfoBO crawl(Block block) throws IOException {
+    public BlockAccountsInfoBO crawl(BlockBundleBO blockBundle) {
+        return crawl(blockBundle.getBlock(), blockBundle.getTransactionBundles());
+    }
+
+    /**
+     * Crawl the accounts of a part of the block transactions, the result keeps the order of the bundles.
+     * 
+     * @param block
+     * @param bundles
+     * @return BlockAccountsInfoBO
+     */
+    public BlockAccountsInfoBO crawl(Block block, List<TransactionBundleBO> bundles) {
         List<AccountInfoBO> accountInfoList = new ArrayList<>();
         Map<String, String> map = new HashMap<>();
-        List<TransactionResult> transactionResults = block.getTransactions();
-        for (TransactionResult result : transactionResults) {
-            BcosTransactionReceipt bcosTransactionReceipt = ethClient.getTransactionReceipt(result);
-            Optional<TransactionReceipt> opt = bcosTransactionReceipt.getTransactionReceipt();
-            if (opt.isPresent()) {
-                TransactionReceipt tr = opt.get();
-                handle(tr, block.getTimestamp()).ifPresent(e -> {
-                    accountInfoList.add(e);
-                    map.putIfAbsent(e.getTxHash(), e.getContractAddress());
-                });
-
-            }
+        for (TransactionBundleBO bundle : bundles) {
+            handle(bundle, block.getTimestamp()).ifPresent(e -> {
+                accountInfoList.add(e);
+                map.putIfAbsent(e.getTxHash(), e.getContractAddress());
+            });
         }
         return new BlockAccountsInfoBO(accountInfoList, map);
     }
 
     /**
-     * Get transaction from TransactionReceipt object firstly, then will get transaction input param, and get
-     * constructor function transaction by judging if transaction's param named to is null, parsing transaction data and
-     * save into database.
-     * 
-     * throw the IOException.
+     * Get constructor function transaction by judging if transaction's param named to is null, and match the deployed
+     * code with the registered contract binaries.
      * 
-     * @param receipt: TransactionReceipt
+     * @param bundle: transaction, receipt and code of a single transaction
      * @param blockTimeStamp: block timestamp
-     * @return void
-     * @throws IOException
+     * @return Optional<AccountInfoBO>
      */
-    public Optional<AccountInfoBO> handle(TransactionReceipt receipt, BigInteger blockTimeStamp) throws IOException {
-        Optional<Transaction> optt = ethClient.getTransactionByHash(receipt);
-        if (optt.isPresent()) {
-            Transaction transaction = optt.get();
-            // get constructor function transaction by judging if transaction's param named to is null
-            if (transaction.getTo() == null || transaction.getTo().equals(ContractConstants.EMPTY_ADDRESS)) {
-                String contractAddress = receipt.getContractAddress();
-                String input = ethClient.getCodeByContractAddress(contractAddress);
-                log.debug("blockNumber: {}, input: {}", receipt.getBlockNumber(), input);
-                Entry<String, String> entry = contractConstructorService.getConstructorNameByCode(input);
-                if (entry == null) {
-                    log.info("block:{} constructor binary can't find!", receipt.getBlockNumber().longValue());
-                    return Optional.empty();
-                }
-                AccountInfoBO accountInfo = new AccountInfoBO();
-                accountInfo.setBlockTimeStamp(new Date(blockTimeStamp.longValue()))
-                        .setBlockHeight(receipt.getBlockNumber().longValue())
-                        .setContractAddress(receipt.getContractAddress()).setContractName(entry.getValue())
-                        .setTxHash(receipt.getTransactionHash());
-                return Optional.of(accountInfo);
-            }
+    public Optional<AccountInfoBO> handle(TransactionBundleBO bundle, BigInteger blockTimeStamp) {
+        // get constructor function transaction by judging if transaction's param named to is null
+        if (!bundle.isDeployment()) {
+            return Optional.empty();
         }
-        return Optional.empty();
-
+        TransactionReceipt receipt = bundle.getReceipt();
+        String input = bundle.getCode();
+        log.debug("blockNumber: {}, input: {}", receipt.getBlockNumber(), input);
+        if (input == null) {
+            log.info("block:{} constructor code can't be fetched!", receipt.getBlockNumber().longValue());
+            return Optional.empty();
+        }
+        Entry<String, String> entry = contractConstructorService.getConstructorNameByCode(input);
+        if (entry == null) {
+            log.info("block:{} constructor binary can't find!", receipt.getBlockNumber().longValue());
+            return Optional.empty();
+        }
+        contractAddressCacheService.put(receipt.getContractAddress(), entry, receipt.getBlockNumber().longValue());
+        AccountInfoBO accountInfo = new AccountInfoBO();
+        accountInfo.setBlockTimeStamp(new Date(blockTimeStamp.longValue()))
+                .setBlockHeight(receipt.getBlockNumber().longValue()).setContractAddress(receipt.getContractAddress())
+                .setContractName(entry.getValue()).setTxHash(receipt.getTransactionHash());
+        return Optional.of(accountInfo);
     }
 
 }
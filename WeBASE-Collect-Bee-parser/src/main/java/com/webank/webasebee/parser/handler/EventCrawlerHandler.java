@@ -15,24 +15,29 @@
  */
 package com.webank.webasebee.parser.handler;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
 
 import org.apache.commons.lang3.StringUtils;
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
-import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.TransactionResult;
-import org.fisco.bcos.web3j.protocol.core.methods.response.BcosTransactionReceipt;
-import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
+import org.fisco.bcos.web3j.protocol.core.methods.response.Log;
 import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.webank.webasebee.common.bo.contract.ContractMapsInfo;
+import com.webank.webasebee.common.bo.data.BlockBundleBO;
 import com.webank.webasebee.common.bo.data.EventBO;
+import com.webank.webasebee.common.bo.data.TransactionBundleBO;
 import com.webank.webasebee.common.constants.ContractConstants;
-import com.webank.webasebee.extractor.ods.EthClient;
 import com.webank.webasebee.parser.crawler.face.BcosEventCrawlerInterface;
 
 import lombok.extern.slf4j.Slf4j;
@@ -48,43 +53,139 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 @Slf4j
 public class EventCrawlerHandler {
-    @Autowired
-    private EthClient ethClient;
     @Autowired
     private Map<String, BcosEventCrawlerInterface> bcosEventCrawlerMap;
+    @Autowired
+    private ContractMapsInfo contractMapsInfo;
 
-    @SuppressWarnings("rawtypes")
-    public List<EventBO> crawl(Block block, Map<String, String> txHashContractNameMapping) throws IOException {
-        List<EventBO> boList = new ArrayList<>();
-        List<TransactionResult> transactionResults = block.getTransactions();
-        for (TransactionResult result : transactionResults) {
-            BcosTransactionReceipt bcosTransactionReceipt = ethClient.getTransactionReceipt(result);
-            Optional<TransactionReceipt> opt = bcosTransactionReceipt.getTransactionReceipt();
-            if (opt.isPresent()) {
-                TransactionReceipt tr = opt.get();
-                String contractName = txHashContractNameMapping.get(tr.getTransactionHash());
-                Optional<Transaction> optt = ethClient.getTransactionByHash(tr);
-                if (optt.isPresent()) {
-                    Transaction transaction = optt.get();
-                    if (transaction.getTo() != null && !transaction.getTo().equals(ContractConstants.EMPTY_ADDRESS)) {
-                        tr.setContractAddress(transaction.getTo());
-                    }
-                }
-                if (ContractConstants.EXPORT_INNER_CALL_EVENT == false && StringUtils.isEmpty(contractName)) {
-                    log.error("TxHash {} is Empty, and the blockNumber is {}! Please check it. ",
-                            tr.getTransactionHash(), block.getNumber());
+    /** key:topic0, value:(key:lower case contract name, value:crawlers of the event) */
+    private Map<String, Map<String, List<BcosEventCrawlerInterface>>> topicCrawlerMap;
+    /** key:lower case contract name, value:crawlers which can't be mapped to an event, they get every receipt. */
+    private Map<String, List<BcosEventCrawlerInterface>> wildcardCrawlerMap;
+
+    /**
+     * Build the dispatch table by matching the crawler bean names, which start with contract name and event name, to
+     * the events of the contract abi.
+     */
+    @PostConstruct
+    public void init() {
+        Map<String, Map<String, List<BcosEventCrawlerInterface>>> topicMap = new HashMap<>();
+        Map<String, List<BcosEventCrawlerInterface>> wildcardMap = new HashMap<>();
+        Map<String, Map<String, String>> eventTopicMap =
+                contractMapsInfo.getEventTopicMap() == null ? new HashMap<>() : contractMapsInfo.getEventTopicMap();
+        bcosEventCrawlerMap.forEach((beanName, crawler) -> {
+            String name = beanName.toLowerCase();
+            String matchedContract = "";
+            // an overloaded event has a topic per overload, they share the name and are all matched
+            List<String> matchedTopics = new ArrayList<>();
+            int matchedLength = -1;
+            for (Map.Entry<String, Map<String, String>> contract : eventTopicMap.entrySet()) {
+                String contractName = contract.getKey().toLowerCase();
+                if (!name.startsWith(contractName)) {
                     continue;
                 }
-                bcosEventCrawlerMap.forEach((k, v) -> {
-                    if (ContractConstants.EXPORT_INNER_CALL_EVENT == false
-                            && !StringUtils.startsWithIgnoreCase(k, contractName)) {
-                        return;
+                if (matchedTopics.isEmpty() && contractName.length() > matchedContract.length()) {
+                    matchedContract = contractName;
+                }
+                for (Map.Entry<String, String> event : contract.getValue().entrySet()) {
+                    String prefix = contractName + event.getValue().toLowerCase();
+                    if (!name.startsWith(prefix) || prefix.length() < matchedLength) {
+                        continue;
+                    }
+                    if (prefix.length() > matchedLength) {
+                        matchedContract = contractName;
+                        matchedTopics.clear();
+                        matchedLength = prefix.length();
                     }
-                    boList.addAll(v.handleReceipt(tr, block.getTimestamp()));
-                });
+                    if (contractName.equals(matchedContract)) {
+                        matchedTopics.add(event.getKey());
+                    }
+                }
+            }
+            if (!matchedTopics.isEmpty()) {
+                for (String topic : matchedTopics) {
+                    topicMap.computeIfAbsent(topic, k -> new HashMap<>())
+                            .computeIfAbsent(matchedContract, k -> new ArrayList<>()).add(crawler);
+                }
+            } else {
+                log.warn("Event crawler {} can't be mapped to an event topic, dispatch every receipt to it.",
+                        beanName);
+                wildcardMap.computeIfAbsent(matchedContract, k -> new ArrayList<>()).add(crawler);
+            }
+        });
+        topicCrawlerMap = topicMap;
+        wildcardCrawlerMap = wildcardMap;
+        log.info("Build event dispatch table of {} topics and {} wildcard contracts.", topicMap.size(),
+                wildcardMap.size());
+    }
+
+    public List<EventBO> crawl(BlockBundleBO blockBundle, Map<String, String> txHashContractNameMapping) {
+        return crawl(blockBundle.getBlock(), blockBundle.getTransactionBundles(), txHashContractNameMapping);
+    }
+
+    /**
+     * Crawl the events of a part of the block transactions, the result keeps the order of the bundles.
+     * 
+     * @param block
+     * @param bundles
+     * @param txHashContractNameMapping
+     * @return event list
+     */
+    public List<EventBO> crawl(Block block, List<TransactionBundleBO> bundles,
+            Map<String, String> txHashContractNameMapping) {
+        List<EventBO> boList = new ArrayList<>();
+        for (TransactionBundleBO bundle : bundles) {
+            TransactionReceipt tr = bundle.getReceipt();
+            String contractName = txHashContractNameMapping.get(tr.getTransactionHash());
+            if (bundle.getTransaction() != null && !bundle.isDeployment()) {
+                tr.setContractAddress(bundle.getContractAddress());
+            }
+            if (ContractConstants.EXPORT_INNER_CALL_EVENT == false && StringUtils.isEmpty(contractName)) {
+                log.error("TxHash {} is Empty, and the blockNumber is {}! Please check it. ", tr.getTransactionHash(),
+                        block.getNumber());
+                continue;
+            }
+            for (BcosEventCrawlerInterface crawler : getCrawlers(tr, contractName)) {
+                boList.addAll(crawler.handleReceipt(tr, block.getTimestamp()));
             }
         }
         return boList;
     }
 
+    /**
+     * Get the crawlers of the topics in the receipt logs, each crawler at most once since it handles all the logs of
+     * the receipt.
+     * 
+     * @param tr
+     * @param contractName
+     * @return crawlers
+     */
+    private Collection<BcosEventCrawlerInterface> getCrawlers(TransactionReceipt tr, String contractName) {
+        Set<BcosEventCrawlerInterface> crawlers = new LinkedHashSet<>();
+        String contractKey = contractName == null ? null : contractName.toLowerCase();
+        if (ContractConstants.EXPORT_INNER_CALL_EVENT) {
+            wildcardCrawlerMap.values().forEach(crawlers::addAll);
+        } else {
+            crawlers.addAll(wildcardCrawlerMap.getOrDefault(contractKey, Collections.emptyList()));
+        }
+        if (tr.getLogs() == null) {
+            return crawlers;
+        }
+        for (Log eventLog : tr.getLogs()) {
+            if (eventLog.getTopics() == null || eventLog.getTopics().isEmpty()) {
+                continue;
+            }
+            Map<String, List<BcosEventCrawlerInterface>> contractCrawlers =
+                    topicCrawlerMap.get(eventLog.getTopics().get(0).toLowerCase());
+            if (contractCrawlers == null) {
+                continue;
+            }
+            if (ContractConstants.EXPORT_INNER_CALL_EVENT) {
+                contractCrawlers.values().forEach(crawlers::addAll);
+            } else {
+                crawlers.addAll(contractCrawlers.getOrDefault(contractKey, Collections.emptyList()));
+            }
+        }
+        return crawlers;
+    }
 }
@@ -24,20 +24,20 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 
-import org.apache.commons.lang3.StringUtils;
 import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
-import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.TransactionResult;
 import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
 import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.webank.webasebee.common.bo.contract.MethodMetaInfo;
+import com.webank.webasebee.common.bo.data.BlockBundleBO;
 import com.webank.webasebee.common.bo.data.BlockMethodInfo;
 import com.webank.webasebee.common.bo.data.BlockTxDetailInfoBO;
 import com.webank.webasebee.common.bo.data.MethodBO;
-import com.webank.webasebee.extractor.ods.EthClient;
+import com.webank.webasebee.common.bo.data.TransactionBundleBO;
 import com.webank.webasebee.parser.service.MethodCrawlService;
+import com.webank.webasebee.parser.service.MethodCrawlService.MethodDispatch;
 import com.webank.webasebee.parser.service.TransactionService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -53,64 +53,65 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @Service
 public class MethodCrawlerHandler {
-    @Autowired
-    private EthClient ethClient;
     @Autowired
     private TransactionService transactionService;
 
     @Autowired
     private MethodCrawlService methodCrawlService;
 
+    public BlockMethodInfo crawl(BlockBundleBO blockBundle, Map<String, String> txHashContractAddressMapping)
+            throws IOException {
+        return crawl(blockBundle.getBlock(), blockBundle.getTransactionBundles(), txHashContractAddressMapping);
+    }
+
+    /**
+     * Crawl the methods of a part of the block transactions, the result keeps the order of the bundles.
+     * 
+     * @param block
+     * @param bundles
+     * @param txHashContractAddressMapping: contract addresses of all the deployments of the block
+     * @return BlockMethodInfo
+     * @throws IOException
+     */
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    public BlockMethodInfo crawl(Block block, Map<String, String> txHashContractAddressMapping) throws IOException {
+    public BlockMethodInfo crawl(Block block, List<TransactionBundleBO> bundles,
+            Map<String, String> txHashContractAddressMapping) throws IOException {
         BlockMethodInfo blockMethodInfo = new BlockMethodInfo();
         List<BlockTxDetailInfoBO> blockTxDetailInfoList = new ArrayList<>();
         List<MethodBO> methodInfoList = new ArrayList();
-        List<TransactionResult> transactionResults = block.getTransactions();
         Map<String, String> txHashContractNameMapping = new HashMap<>();
-        for (TransactionResult result : transactionResults) {
-            Optional<TransactionReceipt> opt = ethClient.getTransactionReceipt(result).getTransactionReceipt();
-            if (opt.isPresent()) {
-                TransactionReceipt receipt = opt.get();
-                Optional<Transaction> optt = ethClient.getTransactionByHash(receipt);
-                if (optt.isPresent()) {
-                    Transaction transaction = optt.get();
-                    Optional<Entry<String, String>> optional =
-                            transactionService.getContractNameByTransaction(transaction, txHashContractAddressMapping);
-                    if (!optional.isPresent()) {
-                        continue;
-                    }
-                    // key:contract binary, value:contract name
-                    Entry<String, String> contractEntry = optional.get();
-                    MethodMetaInfo methodMetaInfo =
-                            transactionService.getMethodMetaInfo(transaction, contractEntry.getValue());
-                    if (methodMetaInfo == null) {
-                        continue;
-                    }
-                    // get block tx detail info
-                    BlockTxDetailInfoBO blockTxDetailInfo =
-                            getBlockTxDetailInfo(block, transaction, receipt, methodMetaInfo);
-                    blockTxDetailInfoList.add(blockTxDetailInfo);
-                    txHashContractNameMapping.putIfAbsent(blockTxDetailInfo.getTxHash(),
-                            blockTxDetailInfo.getContractName());
-                    if (!methodCrawlService
-                            .getMethodCrawler(
-                                    StringUtils.uncapitalize(methodMetaInfo.getMethodName()) + "MethodCrawlerImpl")
-                            .isPresent()) {
-                        log.info("The methodName {} doesn't exist or is constant, please check it !",
-                                methodMetaInfo.getMethodName());
-                        continue;
-                    }
-                    // get method bo
-                    methodInfoList.add(methodCrawlService
-                            .getMethodCrawler(
-                                    StringUtils.uncapitalize(methodMetaInfo.getMethodName()) + "MethodCrawlerImpl")
-                            .get()
-                            .transactionHandler(transaction, receipt, block.getTimestamp(), contractEntry,
-                                    methodMetaInfo.getMethodName(), txHashContractAddressMapping)
-                            .setMethodStatus(receipt.getStatus()));
-                }
+        for (TransactionBundleBO bundle : bundles) {
+            Transaction transaction = bundle.getTransaction();
+            if (transaction == null) {
+                continue;
+            }
+            TransactionReceipt receipt = bundle.getReceipt();
+            Optional<Entry<String, String>> optional =
+                    transactionService.getContractNameByTransaction(bundle, txHashContractAddressMapping);
+            if (!optional.isPresent()) {
+                continue;
+            }
+            // key:contract binary, value:contract name
+            Entry<String, String> contractEntry = optional.get();
+            MethodDispatch dispatch = methodCrawlService.getMethodDispatch(transaction, contractEntry.getValue());
+            if (dispatch == null) {
+                continue;
+            }
+            MethodMetaInfo methodMetaInfo = dispatch.getMethodMetaInfo();
+            // get block tx detail info
+            BlockTxDetailInfoBO blockTxDetailInfo = getBlockTxDetailInfo(block, transaction, receipt, methodMetaInfo);
+            blockTxDetailInfoList.add(blockTxDetailInfo);
+            txHashContractNameMapping.putIfAbsent(blockTxDetailInfo.getTxHash(), blockTxDetailInfo.getContractName());
+            if (dispatch.getCrawler() == null) {
+                log.info("The methodName {} doesn't exist or is constant, please check it !",
+                        methodMetaInfo.getMethodName());
+                continue;
             }
+            // get method bo
+            methodInfoList.add(dispatch.getCrawler()
+                    .transactionHandler(transaction, receipt, block.getTimestamp(), contractEntry,
+                            methodMetaInfo.getMethodName(), txHashContractAddressMapping)
+                    .setMethodStatus(receipt.getStatus()));
         }
         blockMethodInfo.setBlockTxDetailInfoList(blockTxDetailInfoList).setMethodInfoList(methodInfoList)
                 .setTxHashContractNameMapping(txHashContractNameMapping);
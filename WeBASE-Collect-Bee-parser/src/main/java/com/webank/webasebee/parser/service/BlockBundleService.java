@@ -0,0 +1,118 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.parser.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.lang3.StringUtils;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.Block;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.TransactionObject;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosBlock.TransactionResult;
+import org.fisco.bcos.web3j.protocol.core.methods.response.BcosTransactionReceipt;
+import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
+import org.fisco.bcos.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.webank.webasebee.common.bo.data.BlockBundleBO;
+import com.webank.webasebee.common.bo.data.TransactionBundleBO;
+import com.webank.webasebee.common.constants.ContractConstants;
+import com.webank.webasebee.extractor.ods.EthClient;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BlockBundleService fetches the receipt, transaction and contract code of every transaction in a block exactly once.
+ *
+ * @Description: BlockBundleService
+ *
+ */
+@Service
+@Slf4j
+public class BlockBundleService {
+    @Autowired
+    private EthClient ethClient;
+    @Autowired
+    private ContractAddressCacheService contractAddressCacheService;
+
+    @SuppressWarnings("rawtypes")
+    public BlockBundleBO build(Block block) throws IOException {
+        List<TransactionResult> transactionResults = block.getTransactions();
+        List<String> hashes = new ArrayList<>(transactionResults.size());
+        // blocks fetched with full transaction objects carry the transactions already.
+        Map<String, Transaction> fullTransactions = new HashMap<>();
+        for (TransactionResult result : transactionResults) {
+            String hash = EthClient.getTransactionHash(result);
+            hashes.add(hash);
+            if (result instanceof TransactionObject) {
+                fullTransactions.put(hash, ((TransactionObject) result).get());
+            }
+        }
+        List<TransactionReceipt> receipts = new ArrayList<>(hashes.size());
+        for (BcosTransactionReceipt bcosTransactionReceipt : ethClient.getTransactionReceipts(hashes)) {
+            bcosTransactionReceipt.getTransactionReceipt().ifPresent(receipts::add);
+        }
+        List<String> missingHashes = new ArrayList<>();
+        for (TransactionReceipt receipt : receipts) {
+            if (!fullTransactions.containsKey(receipt.getTransactionHash())) {
+                missingHashes.add(receipt.getTransactionHash());
+            }
+        }
+        List<Optional<Transaction>> transactions = ethClient.getTransactions(missingHashes);
+        for (int i = 0; i < missingHashes.size(); i++) {
+            fullTransactions.put(missingHashes.get(i), transactions.get(i).orElse(null));
+        }
+        List<TransactionBundleBO> bundles = new ArrayList<>(receipts.size());
+        for (TransactionReceipt receipt : receipts) {
+            bundles.add(buildBundle(fullTransactions.get(receipt.getTransactionHash()), receipt));
+        }
+        log.debug("Block {} , fetched {} receipts of {} transactions, {} transactions by hash.", block.getNumber(),
+                receipts.size(), hashes.size(), missingHashes.size());
+        return new BlockBundleBO(block, Collections.unmodifiableList(bundles));
+    }
+
+    public TransactionBundleBO buildBundle(Transaction transaction, TransactionReceipt receipt) throws IOException {
+        String contractAddress = getContractAddress(transaction, receipt);
+        String code = null;
+        // the contract of a resolved or unregistered call target is cached already, so its code is not needed.
+        boolean resolved = transaction != null && !isDeployment(transaction) && StringUtils.isNotEmpty(contractAddress)
+                && (contractAddressCacheService.contains(contractAddress)
+                        || contractAddressCacheService.isUnregistered(contractAddress));
+        if (transaction != null && !resolved && StringUtils.isNotEmpty(contractAddress)
+                && !contractAddress.equals(ContractConstants.EMPTY_ADDRESS)) {
+            code = ethClient.getCodeByContractAddress(contractAddress);
+        }
+        return new TransactionBundleBO(transaction, receipt, contractAddress, code);
+    }
+
+    private String getContractAddress(Transaction transaction, TransactionReceipt receipt) {
+        if (transaction == null || isDeployment(transaction)) {
+            return receipt.getContractAddress();
+        }
+        return transaction.getTo();
+    }
+
+    private static boolean isDeployment(Transaction transaction) {
+        return transaction.getTo() == null || transaction.getTo().equals(ContractConstants.EMPTY_ADDRESS);
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2014-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.webank.webasebee.parser.service;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.webank.webasebee.common.bo.contract.ContractMapsInfo;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * ContractAddressCacheService caches the resolved contract of each address, since the contract of an address never
+ * changes. It is warmed from account_info at startup, updated when deployments are crawled, and flushed only by
+ * rollback. The addresses whose deployed code matches no registered contract are cached as well, so their code is not
+ * fetched again.
+ *
+ * @Description: ContractAddressCacheService
+ *
+ */
+@Service
+@Slf4j
+public class ContractAddressCacheService {
+    @Autowired
+    private ContractMapsInfo contractMapsInfo;
+
+    /** key: lower case contract address */
+    private final Map<String, ResolvedContract> cache = new ConcurrentHashMap<>();
+    /** lower case addresses of deployed code which matches no registered contract, they are kept on rollback. */
+    private final Set<String> unregistered = ConcurrentHashMap.newKeySet();
+    /** key: contract name, value: key:contract binary, value:contract name */
+    private Map<String, Entry<String, String>> contractNameBinaryMap;
+
+    @PostConstruct
+    public void init() {
+        Map<String, Entry<String, String>> map = new HashMap<>();
+        contractMapsInfo.getContractBinaryMap()
+                .forEach((k, v) -> map.putIfAbsent(v, new SimpleImmutableEntry<>(k, v)));
+        contractNameBinaryMap = map;
+    }
+
+    /**
+     * @param contractAddress
+     * @return key:contract binary, value:contract name
+     */
+    public Optional<Entry<String, String>> get(String contractAddress) {
+        ResolvedContract resolved = cache.get(contractAddress.toLowerCase());
+        return resolved == null ? Optional.empty() : Optional.of(resolved.contract);
+    }
+
+    public boolean contains(String contractAddress) {
+        return cache.containsKey(contractAddress.toLowerCase());
+    }
+
+    /**
+     * @param contractAddress
+     * @param contract key:contract binary, value:contract name
+     * @param blockHeight the block height the contract is resolved at, used by rollback.
+     */
+    public void put(String contractAddress, Entry<String, String> contract, long blockHeight) {
+        cache.putIfAbsent(contractAddress.toLowerCase(), new ResolvedContract(contract, blockHeight));
+    }
+
+    public boolean isUnregistered(String contractAddress) {
+        return unregistered.contains(contractAddress.toLowerCase());
+    }
+
+    /**
+     * Remember that the deployed code of the address matches no registered contract. Only an address which has code
+     * should be put, since the code of an address never changes after it is deployed, but an address without code may
+     * be deployed later.
+     * 
+     * @param contractAddress
+     */
+    public void putUnregistered(String contractAddress) {
+        unregistered.add(contractAddress.toLowerCase());
+    }
+
+    /**
+     * Warm the cache by a stored account, skip it if the contract is no longer registered.
+     * 
+     * @param contractAddress
+     * @param contractName
+     * @param blockHeight
+     * @return true if the account is cached.
+     */
+    public boolean warm(String contractAddress, String contractName, long blockHeight) {
+        Entry<String, String> contract = contractNameBinaryMap.get(contractName);
+        if (contractAddress == null || contract == null) {
+            return false;
+        }
+        put(contractAddress, contract, blockHeight);
+        return true;
+    }
+
+    /**
+     * Evict the contracts resolved at or above the block height.
+     * 
+     * @param blockHeight
+     */
+    public void evict(long blockHeight) {
+        evict(blockHeight, Long.MAX_VALUE);
+    }
+
+    /**
+     * Evict the contracts resolved in [startBlockHeight, endBlockHeight). The unregistered addresses are kept, since
+     * their code is on the chain already.
+     * 
+     * @param startBlockHeight
+     * @param endBlockHeight
+     */
+    public void evict(long startBlockHeight, long endBlockHeight) {
+        int size = cache.size();
+        cache.values().removeIf(r -> r.blockHeight >= startBlockHeight && r.blockHeight < endBlockHeight);
+        log.info("Evict {} contract addresses resolved from block {}.", size - cache.size(), startBlockHeight);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private static class ResolvedContract {
+        private final Entry<String, String> contract;
+        private final long blockHeight;
+
+        ResolvedContract(Entry<String, String> contract, long blockHeight) {
+            this.contract = contract;
+            this.blockHeight = blockHeight;
+        }
+    }
+}
@@ -17,12 +17,13 @@ package com.webank.webasebee.parser.service;
 
 import java.util.Map;
 
-import org.apache.commons.lang3.StringUtils;
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.webank.webasebee.common.bo.contract.ContractMapsInfo;
-import com.webank.webasebee.common.constants.BinConstant;
+import com.webank.webasebee.common.tools.BytecodeIndex;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -42,6 +43,15 @@ public class ContractConstructorService {
     @Autowired
     private ContractMapsInfo contractMapsInfo;
 
+    /** @Fields bytecodeIndex : index of the contract binaries, built once at startup */
+    private BytecodeIndex bytecodeIndex;
+
+    @PostConstruct
+    public void init() {
+        bytecodeIndex = new BytecodeIndex(contractMapsInfo.getContractBinaryMap());
+        log.info("Build bytecode index of {} contract binaries.", contractMapsInfo.getContractBinaryMap().size());
+    }
+
     /**
      * Get entry that contains contract binary and contract constructor name. If prefix string of input matches some
      * binary of entry in binaryMap, return entry else return null.
@@ -50,21 +60,7 @@ public class ContractConstructorService {
      * @return Map.Entry<String,String>
      */
     public Map.Entry<String, String> getConstructorNameByBinary(String input) {
-
-        Map<String, String> binaryMap = contractMapsInfo.getContractBinaryMap();
-        for (Map.Entry<String, String> entry : binaryMap.entrySet()) {
-            String key = entry.getKey();
-            if (input.length() > BinConstant.META_DATA_HASH_LENGTH
-                    && key.length() > BinConstant.META_DATA_HASH_LENGTH) {
-                key = key.substring(0, key.length() - 1 - BinConstant.META_DATA_HASH_LENGTH);
-            } else {
-                continue;
-            }
-            if (StringUtils.startsWithIgnoreCase(input.substring(2), key)) {
-                return entry;
-            }
-        }
-        return null;
+        return bytecodeIndex.getByBinary(input);
     }
 
     /**
@@ -74,21 +70,7 @@ public class ContractConstructorService {
      * @return key:contract binary, value:contract name
      */
     public Map.Entry<String, String> getConstructorNameByCode(String input) {
-
-        Map<String, String> binaryMap = contractMapsInfo.getContractBinaryMap();
-        for (Map.Entry<String, String> entry : binaryMap.entrySet()) {
-            String key = entry.getKey();
-            if (input.length() > BinConstant.META_DATA_HASH_LENGTH
-                    && key.length() > BinConstant.META_DATA_HASH_LENGTH) {
-                input = input.substring(2, input.length() - 1 - BinConstant.META_DATA_HASH_LENGTH);
-            } else {
-                continue;
-            }
-            if (StringUtils.containsIgnoreCase(key, input)) {
-                return entry;
-            }
-        }
-        return null;
+        return bytecodeIndex.getByCode(input);
     }
 
 }
@@ -15,14 +15,29 @@
  */
 package com.webank.webasebee.parser.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.StringUtils;
+import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.webank.webasebee.common.bo.contract.ContractMapsInfo;
+import com.webank.webasebee.common.bo.contract.MethodMetaInfo;
+import com.webank.webasebee.common.constants.ContractConstants;
 import com.webank.webasebee.parser.crawler.face.BcosMethodCrawlerInterface;
 
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * CrawlService
  *
@@ -32,17 +47,126 @@ import com.webank.webasebee.parser.crawler.face.BcosMethodCrawlerInterface;
  *
  */
 @Service
+@Slf4j
 public class MethodCrawlService {
     @Autowired
     private Map<String, BcosMethodCrawlerInterface> bcosMethodCrawlerMap;
+    @Autowired
+    private ContractMapsInfo contractMapsInfo;
+
+    /** key:lower case crawler bean name, value:crawler */
+    private Map<String, BcosMethodCrawlerInterface> crawlerNameMap;
+    /** sorted 4-byte method selectors, dispatches[i] holds the methods of selectors[i] of all contracts */
+    private int[] selectors;
+    private MethodDispatch[][] dispatches;
+    /** key:contract name, value:constructor dispatch */
+    private Map<String, MethodDispatch> constructorDispatches;
+
+    @PostConstruct
+    public void init() {
+        Map<String, BcosMethodCrawlerInterface> nameMap = new HashMap<>();
+        bcosMethodCrawlerMap.forEach((k, v) -> nameMap.putIfAbsent(k.toLowerCase(), v));
+        crawlerNameMap = nameMap;
+
+        TreeMap<Integer, List<MethodDispatch>> selectorMap = new TreeMap<>();
+        Map<String, MethodDispatch> constructorMap = new HashMap<>();
+        Map<String, List<MethodMetaInfo>> contractMethodMap = contractMapsInfo.getContractMethodMap() == null
+                ? new HashMap<>() : contractMapsInfo.getContractMethodMap();
+        contractMethodMap.forEach((contractName, methodMetaInfos) -> {
+            constructorMap.put(contractName, buildDispatch(contractName, contractName + contractName));
+            for (MethodMetaInfo methodMetaInfo : methodMetaInfos) {
+                long selector = parseSelector(methodMetaInfo.getMethodId());
+                if (selector < 0) {
+                    continue;
+                }
+                selectorMap.computeIfAbsent((int) selector, k -> new ArrayList<>())
+                        .add(buildDispatch(contractName, methodMetaInfo.getMethodName()));
+            }
+        });
+        int[] keys = new int[selectorMap.size()];
+        MethodDispatch[][] values = new MethodDispatch[selectorMap.size()][];
+        int i = 0;
+        for (Map.Entry<Integer, List<MethodDispatch>> e : selectorMap.entrySet()) {
+            keys[i] = e.getKey();
+            values[i++] = e.getValue().toArray(new MethodDispatch[0]);
+        }
+        selectors = keys;
+        dispatches = values;
+        constructorDispatches = constructorMap;
+        log.info("Build method dispatch table of {} selectors and {} constructors.", keys.length,
+                constructorMap.size());
+    }
 
     public Optional<BcosMethodCrawlerInterface> getMethodCrawler(String name) {
-        for (String k : bcosMethodCrawlerMap.keySet()) {
-            if (k.equalsIgnoreCase(name)) {
-                return Optional.of(bcosMethodCrawlerMap.get(k));
+        return Optional.ofNullable(crawlerNameMap.get(name.toLowerCase()));
+    }
+
+    /**
+     * Get the method meta info and crawler of the transaction by the 4-byte selector of the input, the method of the
+     * given contract is preferred if several contracts have the same selector. The returned objects are shared and
+     * must not be modified.
+     * 
+     * @param transaction
+     * @param contractName
+     * @return MethodDispatch, or null if the method is unknown
+     */
+    public MethodDispatch getMethodDispatch(Transaction transaction, String contractName) {
+        if (transaction.getTo() == null || transaction.getTo().equals(ContractConstants.EMPTY_ADDRESS)) {
+            MethodDispatch dispatch = constructorDispatches.get(contractName);
+            return dispatch != null ? dispatch : buildDispatch(contractName, contractName + contractName);
+        }
+        long selector = parseSelector(transaction.getInput());
+        if (selector < 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(selectors, (int) selector);
+        if (index < 0) {
+            return null;
+        }
+        MethodDispatch[] candidates = dispatches[index];
+        for (MethodDispatch dispatch : candidates) {
+            if (dispatch.getMethodMetaInfo().getContractName().equals(contractName)) {
+                return dispatch;
             }
         }
-        return Optional.empty();
+        // the selector belongs to another contract, keep the contract name of the transaction.
+        return buildDispatch(contractName, candidates[0].getMethodMetaInfo().getMethodName());
+    }
+
+    private MethodDispatch buildDispatch(String contractName, String methodName) {
+        MethodMetaInfo methodMetaInfo = new MethodMetaInfo().setContractName(contractName).setMethodName(methodName);
+        BcosMethodCrawlerInterface crawler =
+                crawlerNameMap.get((StringUtils.uncapitalize(methodName) + "MethodCrawlerImpl").toLowerCase());
+        return new MethodDispatch(methodMetaInfo, crawler);
+    }
+
+    /**
+     * Parse the leading 4 bytes of a hex input like 0x12345678..., without creating a substring.
+     * 
+     * @param input
+     * @return the selector as unsigned int value, or -1 if the input is too short or not hex.
+     */
+    public static long parseSelector(String input) {
+        if (input == null || input.length() < 10 || input.charAt(0) != '0'
+                || (input.charAt(1) != 'x' && input.charAt(1) != 'X')) {
+            return -1;
+        }
+        long selector = 0;
+        for (int i = 2; i < 10; i++) {
+            int digit = Character.digit(input.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            selector = (selector << 4) | digit;
+        }
+        return selector;
+    }
+
+    @Value
+    public static class MethodDispatch {
+        private MethodMetaInfo methodMetaInfo;
+        /** null if no crawler is generated for the method */
+        private BcosMethodCrawlerInterface crawler;
     }
 
 }
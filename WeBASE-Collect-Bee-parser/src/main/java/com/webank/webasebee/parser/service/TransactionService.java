@@ -25,12 +25,12 @@ import org.fisco.bcos.web3j.protocol.core.methods.response.Transaction;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import com.webank.webasebee.common.bo.contract.ContractMapsInfo;
 import com.webank.webasebee.common.bo.contract.MethodMetaInfo;
+import com.webank.webasebee.common.bo.data.TransactionBundleBO;
 import com.webank.webasebee.common.constants.ContractConstants;
 import com.webank.webasebee.common.tools.JacksonUtils;
-import com.webank.webasebee.common.vo.NameValueVO;
 import com.webank.webasebee.extractor.ods.EthClient;
+import com.webank.webasebee.parser.service.MethodCrawlService.MethodDispatch;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -50,7 +50,9 @@ public class TransactionService {
     @Autowired
     private ContractConstructorService contractConstructorService;
     @Autowired
-    private ContractMapsInfo contractMapsInfo;
+    private ContractAddressCacheService contractAddressCacheService;
+    @Autowired
+    private MethodCrawlService methodCrawlService;
 
     public String getContractAddressByTransaction(Transaction transaction,
             Map<String, String> txHashContractAddressMapping) {
@@ -65,6 +67,27 @@ public class TransactionService {
 
     public Optional<Entry<String, String>> getContractNameByTransaction(Transaction transaction,
             Map<String, String> txHashContractAddressMapping) throws IOException {
+        return getContractNameByTransaction(transaction, txHashContractAddressMapping, null, null);
+    }
+
+    /**
+     * Same as getContractNameByTransaction(Transaction, Map), but reuses the code already fetched in the bundle when it
+     * belongs to the resolved contract address.
+     * 
+     * @param bundle
+     * @param txHashContractAddressMapping
+     * @return key:contract binary, value:contract name
+     * @throws IOException
+     */
+    public Optional<Entry<String, String>> getContractNameByTransaction(TransactionBundleBO bundle,
+            Map<String, String> txHashContractAddressMapping) throws IOException {
+        return getContractNameByTransaction(bundle.getTransaction(), txHashContractAddressMapping,
+                bundle.getContractAddress(), bundle.getCode());
+    }
+
+    private Optional<Entry<String, String>> getContractNameByTransaction(Transaction transaction,
+            Map<String, String> txHashContractAddressMapping, String knownAddress, String knownCode)
+            throws IOException {
         String contractAddress = getContractAddressByTransaction(transaction, txHashContractAddressMapping);
         if (StringUtils.isEmpty(contractAddress)) {
             log.warn(
@@ -72,35 +95,36 @@ public class TransactionService {
                     transaction.getBlockNumber());
             return Optional.empty();
         }
-        String input = ethClient.getCodeByContractAddress(contractAddress);
+        Optional<Entry<String, String>> cached = contractAddressCacheService.get(contractAddress);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        if (contractAddressCacheService.isUnregistered(contractAddress)) {
+            log.debug("block:{} contract {} is not registered.", transaction.getBlockNumber(), contractAddress);
+            return Optional.empty();
+        }
+        String input = knownCode != null && contractAddress.equals(knownAddress) ? knownCode
+                : ethClient.getCodeByContractAddress(contractAddress);
         log.debug("code: {}", JacksonUtils.toJson(input));
         Entry<String, String> contractEntry = contractConstructorService.getConstructorNameByCode(input);
         if (contractEntry == null) {
+            // an address without code yet, "0x", may be deployed later, so it is not cached.
+            if (StringUtils.length(input) > 2) {
+                contractAddressCacheService.putUnregistered(contractAddress);
+            }
             log.warn(
                     "block:{} constructor code can't be find, maybe the contract is not registered! See the DIR of contractPath.",
                     transaction.getBlockNumber());
             return Optional.empty();
         }
+        contractAddressCacheService.put(contractAddress, contractEntry, transaction.getBlockNumber().longValue());
         log.debug("Block{} contractAddress{} transactionInput: {}", transaction.getBlockNumber(), contractAddress,
                 transaction.getInput());
         return Optional.of(contractEntry);
     }
 
     public MethodMetaInfo getMethodMetaInfo(Transaction transaction, String contractName) {
-        if (transaction.getTo() == null || transaction.getTo().equals(ContractConstants.EMPTY_ADDRESS)) {
-            MethodMetaInfo methodMetaInfo = new MethodMetaInfo();
-            methodMetaInfo.setContractName(contractName).setMethodName(contractName + contractName);
-            return methodMetaInfo;
-        }
-        String methodId = transaction.getInput().substring(0, 10);
-        if (transaction.getInput() != null && contractMapsInfo.getMethodIdMap().containsKey(methodId)) {
-            NameValueVO<String> nameValue = contractMapsInfo.getMethodIdMap().get(methodId);
-            MethodMetaInfo methodMetaInfo = new MethodMetaInfo();
-            methodMetaInfo.setContractName(contractName).setMethodName(nameValue.getValue());
-            return methodMetaInfo;
-
-        } else {
-            return null;
-        }
+        MethodDispatch dispatch = methodCrawlService.getMethodDispatch(transaction, contractName);
+        return dispatch == null ? null : dispatch.getMethodMetaInfo();
     }
 }